@@ -0,0 +1,59 @@
+package benchmark;
+
+import crypto.ConsistentHashing;
+import crypto.HashFunctions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures ConsistentHashing.hash() on the key names the simulator uses ("key i"). The names are built
+ * once, so only hashing is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    // number of distinct names that are hashed in turn, a power of two
+    private static final int NAMES = 1 << 12;
+
+    @Param({"10", "20", "31"})
+    public int m;
+
+    @Param({"md5", "murmur3", "xxhash64"})
+    public String hash;
+
+    private ConsistentHashing ch;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setUp(){
+        ch = new ConsistentHashing(m, HashFunctions.forName(hash));
+        names = new String[NAMES];
+        for(int i = 0; i < NAMES; i++){
+            names[i] = "key " + (i + 1);
+        }
+    }
+
+    @Benchmark
+    public int hashKeyName(){
+        String name = names[next];
+        next = (next + 1) & (NAMES - 1);
+        return ch.hash(name);
+    }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import crypto.HashFunctions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import p2p.Network;
+import protocol.ChordProtocol;
+import protocol.FingerBuildMode;
+import protocol.LookupResult;
+import protocol.NodeIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the phases of the chord protocol on a network of the given size and m (the ring parameter,
+ * see Rings):
+ *
+ *     nodeIndex    - hashing every node and sorting the indexes (NodeIndex.build)
+ *     overlay      - building the ring and the successors (ChordProtocol.buildOverlayNetwork)
+ *     fingerTable  - filling the finger matrix (ChordProtocol.buildFingerTable) with the given build mode
+ *     lookUp       - one lookup from the first node, with a reused result buffer so only the routing is measured
+ *
+ * The network and a ring with fingers are built once per trial, the build benchmarks rebuild on top of it. Building
+ * the rings with 10^6 nodes takes a few seconds and several hundred MB of heap (see the -Xmx in the README).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RingBenchmark {
+
+    // number of distinct keys that are looked up in turn, a power of two
+    private static final int KEYS = 1 << 12;
+
+    // nodes:m, see Rings
+    @Param({Rings.RING_100_M_10, Rings.RING_100_M_20, Rings.RING_100_M_31, Rings.RING_10000_M_20,
+            Rings.RING_10000_M_31, Rings.RING_1000000_M_20, Rings.RING_1000000_M_31})
+    public String ring;
+
+    @Param({"SWEEP"})
+    public FingerBuildMode fingerBuildMode;
+
+    private Network network;
+    private ChordProtocol protocol;
+    private int[] keys;
+    private int next;
+    private LookupResult result;
+
+    @Setup
+    public void setUp(){
+        Rings.Size size = new Rings.Size(ring);
+        network = Rings.network(size.nodes);
+        protocol = new ChordProtocol(size.m);
+        protocol.setHashFunction(HashFunctions.MD5);
+        protocol.fingerBuildMode = fingerBuildMode;
+        protocol.setNetwork(network);
+        protocol.buildOverlayNetwork();
+        protocol.buildFingerTable();
+
+        keys = new int[KEYS];
+        for(int i = 0; i < KEYS; i++){
+            keys[i] = protocol.ch.hash("key " + (i + 1));
+        }
+        result = new LookupResult(false);
+    }
+
+    @Benchmark
+    public NodeIndex nodeIndex(){
+        return NodeIndex.build(network, protocol.ch);
+    }
+
+    @Benchmark
+    public ChordProtocol overlay(){
+        protocol.buildOverlayNetwork();
+        return protocol;
+    }
+
+    @Benchmark
+    public ChordProtocol fingerTable(){
+        protocol.buildFingerTable();
+        return protocol;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int lookUp(){
+        int key = keys[next];
+        next = (next + 1) & (KEYS - 1);
+        protocol.lookUp(key, result);
+        return result.getHopCount();
+    }
+}
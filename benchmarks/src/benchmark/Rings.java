@@ -0,0 +1,70 @@
+package benchmark;
+
+import p2p.Network;
+import p2p.Node;
+
+/**
+ * Builds the networks the benchmarks run on, with the same node names as the simulator ("Node i").
+ */
+final class Rings {
+
+    /**
+     * The node count and m pairs of the ring benchmarks, as "nodes:m". Only pairs with nodes <= 2^m are listed: with
+     * more nodes than positions the ids collapse to about 2^m distinct ones, and the result would be the cost of a
+     * much smaller ring labeled with the large node count.
+     */
+    static final String RING_100_M_10 = "100:10";
+    static final String RING_100_M_20 = "100:20";
+    static final String RING_100_M_31 = "100:31";
+    static final String RING_10000_M_20 = "10000:20";
+    static final String RING_10000_M_31 = "10000:31";
+    static final String RING_1000000_M_20 = "1000000:20";
+    static final String RING_1000000_M_31 = "1000000:31";
+
+    /**
+     * the node count and m of a ring parameter
+     */
+    static final class Size {
+        final int nodes;
+        final int m;
+
+        /**
+         * @param ring "nodes:m"
+         * @throws IllegalArgumentException if the parameter is malformed or has more nodes than positions
+         */
+        Size(String ring){
+            String[] parts = ring.split(":");
+            if(parts.length != 2){
+                throw new IllegalArgumentException("ring parameter must be nodes:m, not " + ring);
+            }
+            this.nodes = Integer.parseInt(parts[0]);
+            this.m = Integer.parseInt(parts[1]);
+            if(nodes <= 0 || m <= 0 || m > 31 || nodes > 1L << m){
+                throw new IllegalArgumentException("ring " + ring + " needs 0 < nodes <= 2^m and 0 < m <= 31");
+            }
+        }
+    }
+
+    private Rings(){
+    }
+
+    /**
+     * @param nodeCount number of nodes
+     * @return a network with the nodes "Node 1" ... "Node nodeCount"
+     */
+    static Network network(int nodeCount){
+        Network network = new Network("benchmark network");
+        for(int i = 1; i <= nodeCount; i++){
+            String name = "Node " + i;
+            network.addNode(name, new Node(name));
+        }
+        return network;
+    }
+
+    /**
+     * the number of keys the simulator uses for the node count and m
+     */
+    static int keyCount(int nodeCount, int m){
+        return (nodeCount / 2) < m ? nodeCount / 2 : nodeCount * 3;
+    }
+}
@@ -0,0 +1,134 @@
+package benchmark;
+
+import crypto.ConsistentHashing;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import p2p.Network;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures ChordProtocolSimulator.assignKeys() (generating the keys and handing them to the nodes) and
+ * findPeer() (the binary search in the node index) with the key count the simulator uses for the node count and m.
+ *
+ * ChordProtocolSimulator is in the default package, which can't be imported from a named package, so the methods are
+ * looked up once with method handles. The handles are static final, so the JIT inlines them like direct calls.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SimulatorBenchmark {
+
+    private static final MethodHandle GET_INSTANCE;
+    private static final MethodHandle ASSIGN_KEYS;
+    private static final MethodHandle FIND_PEER;
+
+    static {
+        try {
+            Class<?> simulator = Class.forName("ChordProtocolSimulator");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            GET_INSTANCE = lookup.findStatic(simulator, "getInstance",
+                    MethodType.methodType(simulator, Network.class, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Network.class, int.class, int.class));
+            ASSIGN_KEYS = lookup.findVirtual(simulator, "assignKeys", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            FIND_PEER = lookup.findVirtual(simulator, "findPeer", MethodType.methodType(String.class, int.class))
+                    .asType(MethodType.methodType(String.class, Object.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // creates a simulator for a new network, the same way the simulator's main method does
+    static Object simulator(Rings.Size size){
+        try {
+            return (Object) GET_INSTANCE.invokeExact(Rings.network(size.nodes), size.m,
+                    Rings.keyCount(size.nodes, size.m));
+        } catch (Throwable e) {
+            throw new IllegalStateException("can't create the simulator", e);
+        }
+    }
+
+    /**
+     * A simulator with a new network for every call, so every assignKeys() starts with empty nodes.
+     */
+    @State(Scope.Thread)
+    public static class Unassigned {
+
+        // nodes:m, see Rings
+        @Param({Rings.RING_100_M_10, Rings.RING_100_M_20, Rings.RING_100_M_31, Rings.RING_10000_M_20,
+                Rings.RING_10000_M_31, Rings.RING_1000000_M_20, Rings.RING_1000000_M_31})
+        public String ring;
+
+        Object simulator;
+
+        @Setup(Level.Invocation)
+        public void setUp(){
+            simulator = simulator(new Rings.Size(ring));
+        }
+    }
+
+    /**
+     * A simulator with the keys assigned, and the key indexes that are looked up in turn.
+     */
+    @State(Scope.Thread)
+    public static class Assigned {
+
+        // number of distinct keys that are looked up in turn, a power of two
+        private static final int KEYS = 1 << 12;
+
+        // nodes:m, see Rings
+        @Param({Rings.RING_100_M_10, Rings.RING_100_M_20, Rings.RING_100_M_31, Rings.RING_10000_M_20,
+                Rings.RING_10000_M_31, Rings.RING_1000000_M_20, Rings.RING_1000000_M_31})
+        public String ring;
+
+        Object simulator;
+        int[] keys;
+        int next;
+
+        @Setup
+        public void setUp() throws Throwable {
+            Rings.Size size = new Rings.Size(ring);
+            simulator = simulator(size);
+            ASSIGN_KEYS.invokeExact(simulator);
+            ConsistentHashing ch = new ConsistentHashing(size.m);
+            keys = new int[KEYS];
+            for(int i = 0; i < KEYS; i++){
+                keys[i] = ch.hash("key " + (i + 1));
+            }
+        }
+
+        int nextKey(){
+            int key = keys[next];
+            next = (next + 1) & (KEYS - 1);
+            return key;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object assignKeys(Unassigned state) throws Throwable {
+        ASSIGN_KEYS.invokeExact(state.simulator);
+        return state.simulator;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String findPeer(Assigned state) throws Throwable {
+        return (String) FIND_PEER.invokeExact(state.simulator, state.nextKey());
+    }
+}
@@ -2,9 +2,16 @@ import p2p.Network;
 import p2p.NetworkInterface;
 import p2p.NodeInterface;
 import crypto.ConsistentHashing;
+import crypto.HashFunction;
+import crypto.HashFunctions;
 import protocol.ChordProtocol;
+import protocol.ChordRing;
+import protocol.LoadBalance;
+import protocol.LookupCounters;
 import protocol.LookUpResponse;
+import protocol.NodeIndex;
 import protocol.Protocol;
+import simulation.Histogram;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -12,9 +19,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.io.FileWriter;
+import java.util.concurrent.ForkJoinPool;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 /**
  * This class simulates the chord protocol.
@@ -43,6 +49,40 @@ public class ChordProtocolSimulator {
     // deontes the object of the consistent hashing that is used in hash calculation
     public ConsistentHashing consistentHash;
 
+    // sorted index of the node indexes, used to find the node that is responsible for a key
+    private NodeIndex nodeIndex;
+
+    // if true keys are assigned with one sort-merge pass over the ring (assignKeysBulk), otherwise one by one
+    public boolean bulkAssign = true;
+
+    // number of threads used to look up the keys in testLookUpAndWriteToFile
+    public int threads = 1;
+
+    // number of tokens each node has on the ring, keys are assigned to the tokens
+    public int virtualNodes = 1;
+
+    // format of the lookup counters written by start() ("csv" or "json"), null if the lookups are not counted
+    public String countersFormat;
+
+    // if true the route file is written on a dedicated thread (see RouteWriter)
+    public boolean writerThread;
+
+    // how much is printed to the console, null for the default of the node count (see Verbosity)
+    public Verbosity verbosity;
+
+    // if positive, only this many randomly chosen nodes are printed instead of the whole ring and network
+    public int sampleNodes;
+
+    // seed of the node sample
+    public long seed = 1;
+
+    // how the routes of the lookups are written: "text" (the route file), "binary" (the trace, see LookupTrace) or
+    // "both"
+    public String routeFormat = "text";
+
+    // key count from which the key indexes are sorted with Arrays.parallelSort
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
     private static class LookupRecord {
         final String keyName;
         final int keyIndex;
@@ -57,10 +97,15 @@ public class ChordProtocolSimulator {
 
 
     public ChordProtocolSimulator(Protocol protocol, Network network, int m, int nodeCount, int keyCount){
+        this(protocol, network, m, nodeCount, keyCount, new ConsistentHashing(m));
+    }
+
+    public ChordProtocolSimulator(Protocol protocol, Network network, int m, int nodeCount, int keyCount,
+                                  ConsistentHashing consistentHash){
         this.keyIndexes = new LinkedHashMap<>();
         this.protocol = protocol;
         this.network = network;
-        this.consistentHash = new ConsistentHashing(m);
+        this.consistentHash = consistentHash;
         this.m = m;
         this.nodeCount = nodeCount;
         this.keyCount  = keyCount;
@@ -83,16 +128,61 @@ public class ChordProtocolSimulator {
      * @return the chord protocol simulator object
      */
     public static ChordProtocolSimulator getInstance(Network network, int m, int keyCount){
+        return getInstance(network, m, keyCount, HashFunctions.MD5);
+    }
+
+    /**
+     * This method creates a new object of the chord protocol simulator that uses the given hash function for both the
+     * node and the key indexes.
+     *
+     * @param network - the network object
+     * @param m - 'm' value used in consistent hashing
+     * @param keyCount - number of keys that needs to be assigned to nodes
+     * @param hashFunction - hash function used in consistent hashing
+     * @return the chord protocol simulator object
+     */
+    public static ChordProtocolSimulator getInstance(Network network, int m, int keyCount, HashFunction hashFunction){
 
-        Protocol chordProtocol = new ChordProtocol(m);
+        ChordProtocol chordProtocol = new ChordProtocol(m);
+        chordProtocol.setHashFunction(hashFunction);
         int nodeCount = network.getSize();
         ChordProtocolSimulator chordProtocolSimulator = new ChordProtocolSimulator(chordProtocol, network, m, nodeCount,
-                keyCount);
+                keyCount, new ConsistentHashing(m, hashFunction));
         return chordProtocolSimulator;
     }
 
 
 
+    /**
+     * This method applies the command line options to the simulator and to the chord protocol.
+     *
+     * @param options the simulator options
+     */
+    public void configure(SimulatorOptions options){
+        this.bulkAssign = options.bulkAssign;
+        this.threads = options.threads;
+        this.virtualNodes = options.virtualNodes;
+        this.countersFormat = options.countersFormat;
+        this.writerThread = options.writerThread;
+        this.routeFormat = options.routeFormat;
+        this.verbosity = options.verbosity;
+        this.sampleNodes = options.sampleNodes;
+        this.seed = options.seed;
+        this.nodeIndex = null;
+        if(protocol instanceof ChordProtocol){
+            ChordProtocol chordProtocol = (ChordProtocol) protocol;
+            chordProtocol.virtualNodes = options.virtualNodes;
+            chordProtocol.fingerBuildMode = options.fingerBuildMode;
+            chordProtocol.successorListLength = options.successorListLengths[0];
+            chordProtocol.failureTolerant = options.failureTolerant;
+            if(options.threads > 1){
+                chordProtocol.pool = new ForkJoinPool(options.threads);
+            }
+        }
+    }
+
+
+
     /**
      * This method assign indexes of keys to nodes in the network.
      *
@@ -103,22 +193,129 @@ public class ChordProtocolSimulator {
      *         1) find the node that should be responsible for the key (the index of the node should be greater than the
      *         index of key and the key index should be close to node index in the consistent hash ring)
      *         2) add the key index to the node (by calling the peer.add_data() from the network)
+     *
+     *     The responsible node is found with a binary search in the node index, so assigning K keys to N nodes costs
+     *     O(N log N + K log N) instead of hashing every node for every key.
      */
     public void assignKeys(){
 
         generateKeys();
+        assignGeneratedKeys();
+    }
+
+
+
+    /**
+     * This method assigns the keys that generateKeys() generated to the nodes, with one sort-merge pass
+     * (assignKeysBulk()) or with one binary search per key, see assignKeys().
+     */
+    public void assignGeneratedKeys(){
+        if(bulkAssign){
+            assignKeysBulk();
+            return;
+        }
+        NodeIndex index = getNodeIndex();
         for(Map.Entry<String, Integer> entry: keyIndexes.entrySet())
         {
-//            String keyName =  entry.getKey();
             int keyIndex =  entry.getValue();
-            String peerName = findPeer(keyIndex);
-//           System.out.println("key name: "+name +"\t key_index : "+key_index+"\t peer_name : "+peer_name);
-            protocol.getNetwork().getTopology().get(peerName).addData(keyIndex);
+            // the node index resolves the responsible node directly, no need to go through the node name
+            index.nodeAt(index.successorOrdinal(keyIndex)).addData(keyIndex);
         }
     }
 
 
 
+    /**
+     * This method assigns the generated key indexes to nodes in one sort-merge pass.
+     *
+     *     1) copy the key indexes into an int array and sort it (parallel sort for large key counts)
+     *     2) sweep the sorted keys against the sorted node indexes. Each node is responsible for the contiguous run
+     *        of keys that are greater than the index of its predecessor and not greater than its own index
+     *     3) hand each node its run in one batch (peer.addDataRange())
+     *
+     *     Keys that are larger than the biggest node index wrap around to the first node. This is O(K log K + N).
+     */
+    public void assignKeysBulk(){
+        NodeIndex index = getNodeIndex();
+        int nodes = index.size();
+        if(nodes == 0){
+            return;
+        }
+
+        int[] keys = sortedKeys();
+        int start = 0;
+        for(int ordinal = 0; ordinal < nodes && start < keys.length; ordinal++){
+            int nodeId = index.idAt(ordinal);
+            int end = start;
+            while(end < keys.length && keys[end] <= nodeId){
+                end++;
+            }
+            if(end > start){
+                index.nodeAt(ordinal).addDataRange(keys, start, end);
+            }
+            start = end;
+        }
+        // wrap around: keys after the biggest node index belong to the first node
+        if(start < keys.length){
+            index.nodeAt(0).addDataRange(keys, start, keys.length);
+        }
+    }
+
+
+
+    // the key indexes in ascending order (parallel sort for large key counts)
+    private int[] sortedKeys(){
+        int[] keys = new int[keyIndexes.size()];
+        int k = 0;
+        for(Integer keyIndex : keyIndexes.values()){
+            keys[k++] = keyIndex;
+        }
+        if(keys.length >= PARALLEL_SORT_THRESHOLD){
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        return keys;
+    }
+
+
+
+    /**
+     * This method measures how evenly the keys and the ring are spread over the nodes: keys and arc per node with
+     * max/mean, standard deviation, Gini coefficient and histogram (see LoadBalance). The keys must have been
+     * generated.
+     *
+     * @return the load balance of the nodes
+     */
+    public LoadBalance measureLoadBalance(){
+        return LoadBalance.of(getNodeIndex(), sortedKeys(), m);
+    }
+
+
+
+    /**
+     * This method measures the load balance and writes it as json to the given file. The summary is printed by
+     * printSummary().
+     *
+     * @param fileName the name of the json file
+     * @return the load balance
+     */
+    public LoadBalance writeLoadBalance(String fileName){
+        LoadBalance loadBalance = measureLoadBalance();
+        try {
+            Files.write(Paths.get(fileName), loadBalance.toJson().getBytes(StandardCharsets.UTF_8));
+            if(verbosity() != Verbosity.QUIET){
+                System.out.println("Load balance written to: " + fileName);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + fileName);
+            e.printStackTrace();
+        }
+        return loadBalance;
+    }
+
+
+
     /**
      * This method generates 'KeyCount' number of keys. each key has name "key"+i i=1...KeyCount
      *     For each key:
@@ -140,75 +337,125 @@ public class ChordProtocolSimulator {
 
     /**
      * This method finds peer that should be responsible for a given key.
-     * It retrieves the set of nodes from the network and for each node calculates the index of the node using
-     * consistent hashing. Then it compares the index of the key with index of all the nodes. It choose a node
-     * that has an index that would be next to the key index in the consistent hash ring.
+     * It uses the node index, which holds the indexes of all the nodes in sorted order. It choose a node that has an
+     * index that would be next to the key index in the consistent hash ring (binary search).
      *
      * @param key_index index of the key
      * @return the name of the node that should be responsible for the key
      */
     public String findPeer(int key_index){
-
-        List<Integer> sortedIndexes = new ArrayList<Integer>();
-        int peerIndex = -1;
-
-        // calculate the indexes of all the nodes using consistent hasing
-        for(Map.Entry<String, NodeInterface> node: this.network.getTopology().entrySet()) {
-            String nodeName = node.getValue().getName();
-            int nodeIndex = consistentHash.hash(nodeName);
-            sortedIndexes.add(nodeIndex);
-        }
-
-        // sort the node indexes
-        Collections.sort(sortedIndexes);
-
-        // check if the key index is larger than the biggest node index
-        // if it is larger then the key should be placed before the lowest node index (at the start of the ring)
-        if(key_index> sortedIndexes.get(sortedIndexes.size()-1)){
-            peerIndex = sortedIndexes.get(0);
-        }
-        else{
-            // if the key index is not larger than the biggest node index, then choose the node that has index
-            // bigger than the key index. loop through the nodes in the ascending order of the node indexes
-            for(int i=0;i < sortedIndexes.size(); i++){
-                if(sortedIndexes.get(i) >= key_index){
-                    peerIndex = sortedIndexes.get(i);
-                    break;
-                }
-            }
-        }
+        NodeIndex index = getNodeIndex();
 
         // if no node is found then return null. Note: If everything works well then this shouldn't happen.
-        if (peerIndex==-1){
+        if(index.size() == 0){
             return null;
         }
-        // return the name of the node that corresponds to the index
-        return findPeerName(peerIndex);
+        return index.nodeAt(index.successorOrdinal(key_index)).getName();
     }
 
 
     /**
-     * This method returns the peer name based on the peer index
-     * This method uses a hack that the network setup uses the names Peer 1, Peer 2,... etc. It would be nice if this is
-     * automatic. like fetching all the nodes from the network and compare the names with the given node (based on
-     * index). Maybe I can improve it later.
+     * This method returns the peer name based on the peer index. The name is taken from the node index, so it works
+     * for any node names used in the network.
      *
      * @param peerIndex index of the node
-     * @return  name of the node
+     * @return  name of the node, or null if no node has the index
      */
     public String findPeerName(int peerIndex){
+        NodeIndex index = getNodeIndex();
+        int ordinal = index.ordinalOf(peerIndex);
+        return ordinal < 0 ? null : index.nodeAt(ordinal).getName();
+    }
 
 
-        int peerCount = nodeCount;
-        for(int i=1; i<peerCount+1; i++){
-            String name = "Node "+i;
-            int index = consistentHash.hash(name);
-            if(peerIndex==index){
-                return name;
+    /**
+     * returns the index of the nodes in the network. The index is built the first time it is needed, so every node is
+     * hashed only once. With virtual nodes it is the index of the tokens.
+     * @return the node index
+     */
+    public NodeIndex getNodeIndex(){
+        if(nodeIndex == null){
+            nodeIndex = NodeIndex.build(network, consistentHash, virtualNodes);
+        }
+        return nodeIndex;
+    }
+
+
+    /**
+     * This method rebuilds the node index. It should be called when nodes are added to or removed from the network.
+     */
+    public void rebuildNodeIndex(){
+        nodeIndex = NodeIndex.build(network, consistentHash, virtualNodes);
+    }
+
+
+
+    /**
+     * @return the verbosity, the default of the node count if none is set
+     */
+    public Verbosity verbosity(){
+        return verbosity != null ? verbosity : Verbosity.defaultFor(nodeCount);
+    }
+
+
+
+    /**
+     * This method prints the size of the ring and the spread of the keys and the arcs over the nodes, without visiting
+     * the nodes one by one.
+     *
+     * @param loadBalance the load balance of the nodes (see measureLoadBalance())
+     */
+    public void printSummary(LoadBalance loadBalance){
+        if(protocol instanceof ChordProtocol){
+            ChordRing ring = ((ChordProtocol) protocol).ring;
+            System.out.printf("Ring: %d nodes on %d tokens, m = %d (%d positions), %d keys, ring memory %.1f MB%n",
+                    ring.physicalCount(), ring.size(), m, ring.ringLength, keyIndexes.size(), ring.memoryBytes() / 1e6);
+        }
+        System.out.println("Load balance: " + loadBalance);
+    }
+
+
+
+    /**
+     * This method prints k randomly chosen nodes (seeded with seed) in ring order, with the same information as
+     * printNetwork(), instead of every node of the network.
+     *
+     * @param k number of nodes to print
+     */
+    public void printSample(int k){
+        List<NodeInterface> nodes = new ArrayList<>();
+        if(protocol instanceof ChordProtocol){
+            // the physical nodes are numbered in ring order
+            ChordRing ring = ((ChordProtocol) protocol).ring;
+            for(int p = 0; p < ring.physicalLimit(); p++){
+                if(ring.physicalNode(p) != null){
+                    nodes.add(ring.physicalNode(p));
+                }
             }
+        } else {
+            nodes.addAll(network.getTopology().values());
+        }
+        int count = Math.min(k, nodes.size());
+        // partial Fisher-Yates shuffle: the first count positions get a random sample
+        Random random = new Random(seed);
+        int[] positions = new int[nodes.size()];
+        for(int i = 0; i < positions.length; i++){
+            positions[i] = i;
+        }
+        for(int i = 0; i < count; i++){
+            int j = i + random.nextInt(positions.length - i);
+            int swap = positions[i];
+            positions[i] = positions[j];
+            positions[j] = swap;
+        }
+        int[] sample = Arrays.copyOf(positions, count);
+        Arrays.sort(sample);
 
+        System.out.printf("..............Printing %d of %d nodes..............%n", count, nodes.size());
+        for(int position : sample){
+            nodes.get(position).print();
         }
-        return null;
+        System.out.println("......................................................");
     }
 
 
@@ -264,64 +511,93 @@ public class ChordProtocolSimulator {
      * This method tests the functioning of the lookup and writes results to output file.
      * For each key index it calls the lookup from the chord protocol and returns the node index.
      * It then writes the results in the required format to the output file.
+     *
+     * The keys are split into chunks that are looked up by 'threads' worker threads (see LookupEvaluator). The chunks
+     * are written in key order, so the output file is the same for any number of threads. The hop count and lookup
+     * time histograms of the chunks are merged, and their percentiles are printed after the average hop count.
+     *
+     * The records are formatted into reused byte buffers and written through a large file channel buffer, on a
+     * dedicated thread if writerThread is set (see RouteWriter).
+     *
+     * With routeFormat "binary" or "both" the routes are written as a binary trace (see LookupTrace) to the file with
+     * the extension .trace instead of .txt. With "binary" the text file is not written.
      * 
      * @param outputFileName the name of the output file to write results to
      */
     public void testLookUpAndWriteToFile(String outputFileName){
-        List<Integer> hopCounts = new ArrayList<>();
-        
-        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFileName))) {
-            
-            for(Map.Entry<String, Integer> entry: keyIndexes.entrySet())
-            {
-                // lookup the key index
-                LookUpResponse response = protocol.lookUp(entry.getValue());
-
-                if(response == null)
-                {
-                    System.err.println("Lookup failed: null response for " + entry.getKey());
-                    return;
+        // number of lookups, hop counts and lookup times of all the chunks
+        int[] lookups = new int[1];
+        Histogram hops = new Histogram();
+        Histogram nanos = new Histogram();
+        // true if the protocol returned no response for a key
+        boolean[] noResponse = new boolean[1];
+
+        boolean text = !"binary".equals(routeFormat);
+        // the trace needs the ordinals of the chord ring
+        String traceFileName = "text".equals(routeFormat) || !(protocol instanceof ChordProtocol) ? null
+                : outputFileName.replaceFirst("\\.txt$", "") + ".trace";
+
+        try (RouteWriter writer = text ? new RouteWriter(Paths.get(outputFileName), writerThread) : null;
+             RouteWriter trace = traceFileName != null ? new RouteWriter(Paths.get(traceFileName), writerThread)
+                     : null) {
+            LookupEvaluator evaluator = new LookupEvaluator(this);
+            evaluator.writer = writer;
+            evaluator.formatRecords = text;
+            evaluator.consoleMessages = verbosity() == Verbosity.VERBOSE;
+            if(trace != null){
+                LookupTrace.writeHeader(trace, ((ChordProtocol) protocol).ring);
+                evaluator.traceWriter = trace;
+            }
+            evaluator.run(threads, chunk -> {
+                // Format: key 1:4 Node 1:4 hop count: 3, route: Node 4 Node 3 Node 1
+                if(writer != null){
+                    writer.write(chunk.records);
+                }
+                if(trace != null){
+                    trace.write(chunk.trace);
                 }
+                System.out.print(chunk.console);
+                lookups[0] += chunk.count;
+                hops.merge(chunk.hops);
+                nanos.merge(chunk.nanos);
 
-                // Check whether the returned node index is correct or not
-                if(checkResponse(entry.getValue(), response.node_name)){
-                    // Format: key 1:4 Node 1:4 hop count: 3, route: Node 4 Node 3 Node 1
-                    String keyName = entry.getKey();
-                    int keyIndex = entry.getValue();
-                    String nodeName = response.node_name;
-                    int nodeIndex = response.node_index;
-                    int hopCount = response.peers_looked_up.size();
-                    
-                    // Build route string
-                    StringBuilder route = new StringBuilder();
-                    for(String peer : response.peers_looked_up) {
-                        route.append(peer).append(" ");
-                    }
-                    
-                    // Write formatted output
-                    writer.printf("%s:%d %s:%d hop count: %d, route: %s%n", 
-                                  keyName, keyIndex, nodeName, nodeIndex, hopCount, route.toString().trim());
-                    
-                    // Store hop count for average calculation
-                    hopCounts.add(hopCount);
-                    
-                    System.out.println("lookup successful for " + entry.getKey());
+                if(chunk.noResponse)
+                {
+                    System.err.println("Lookup failed: null response for " + chunk.failedKey);
+                    noResponse[0] = true;
+                    return false;
                 }
-                else
+                if(chunk.failedKey != null)
                 {
-                    System.out.println("lookup failed for " + entry.getKey());
-                    break;
+                    System.out.println("lookup failed for " + chunk.failedKey);
+                    return false;
                 }
+                return true;
+            });
+            if(noResponse[0]){
+                return;
             }
-            
+
             // Calculate and write average hop count
-            if (!hopCounts.isEmpty()) {
-                double averageHopCount = hopCounts.stream().mapToInt(Integer::intValue).average().orElse(0.0);
-                writer.printf("%naverage hop count: %.2f%n", averageHopCount);
-                System.out.printf("Average hop count: %.2f%n", averageHopCount);
+            boolean print = verbosity() != Verbosity.QUIET;
+            if (lookups[0] > 0) {
+                double averageHopCount = hops.mean();
+                if(writer != null){
+                    writer.write(String.format("%naverage hop count: %.2f%n", averageHopCount));
+                }
+                if(print){
+                    System.out.printf("Average hop count: %.2f%n", averageHopCount);
+                    System.out.println("Hop count " + hops.percentiles(1));
+                    System.out.println("Lookup time us " + nanos.percentiles(1000));
+                }
             }
             
-            System.out.println("Results written to: " + outputFileName);
+            if(writer != null && print){
+                System.out.println("Results written to: " + outputFileName);
+            }
+            if(trace != null && print){
+                System.out.println("Trace written to: " + traceFileName);
+            }
             
         } catch (IOException e) {
             System.err.println("Error writing to file: " + outputFileName);
@@ -366,19 +642,14 @@ public class ChordProtocolSimulator {
 
     /**
      * This method compares whether the node actually stores the given key index or not
-     *  It retrieves the data items stored at the particular node and compares whether the key index is stored or not
+     *  It asks the node whether the key index is stored (binary search in the sorted keys of the node)
      * @param keyIndex index of the key
      * @param peerName name of the node
      * @return true if the node stores the key index otherwise return false
      */
     public boolean checkResponse(int keyIndex, String peerName){
-        LinkedHashSet<Integer> dataItems = (LinkedHashSet<Integer>) this.network.getNode(peerName).getData();
-        for(Integer data : dataItems){
-            if(data==keyIndex){
-                return true;
-            }
-        }
-        return false;
+        NodeInterface node = this.network.getNode(peerName);
+        return node != null && node.containsData(keyIndex);
     }
 
 
@@ -396,6 +667,21 @@ public class ChordProtocolSimulator {
         protocol.setKeys(keyIndexes);
         protocol.buildOverlayNetwork();
         protocol.buildFingerTable();
+        if(protocol instanceof ChordProtocol && verbosity() != Verbosity.QUIET){
+            ChordProtocol chordProtocol = (ChordProtocol) protocol;
+            System.out.printf("Finger tables built (%s) in %.3f ms%n",
+                    chordProtocol.fingerBuildMode.name().toLowerCase(), chordProtocol.fingerBuildNanos / 1e6);
+            if(chordProtocol.virtualNodes > 1){
+                printVirtualNodes(chordProtocol.ring, chordProtocol.virtualNodes);
+            }
+        }
+    }
+
+    // prints the tokens and the memory of the token ring. The keys per physical node are in the load balance (see
+    // writeLoadBalance()), so they are counted in one place
+    private void printVirtualNodes(ChordRing ring, int virtualNodes){
+        System.out.printf("Virtual nodes: %d per node, %d tokens for %d nodes, ring memory: %.1f MB%n", virtualNodes,
+                ring.size(), ring.physicalCount(), ring.memoryBytes() / 1e6);
     }
 
     /**
@@ -403,21 +689,76 @@ public class ChordProtocolSimulator {
      * This method starts the simulation.
      *     1) builds the chord protocol
      *     2) generate keys and assign it to nodes
-     *     3) tests the look up operation and writes results to output file
+     *     3) writes the key and arc load of the nodes to output/nodes_<n>_m_<m>_load.json
+     *     4) prints the summary, and the ring and the network (or a sample of the nodes) depending on the verbosity
+     *     5) tests the look up operation and writes results to output file
+     *     6) with countersFormat set, writes the lookup counters (see writeCounters())
      */
     public void start(){
 
         // builds the protocol
         buildProtocol();
 
-        printRing();
-        printNetwork();
+        // key load and arc size of every node, written next to the route file
+        LoadBalance loadBalance = writeLoadBalance(String.format("output/nodes_%d_m_%d_load.json", nodeCount, m));
+
+        Verbosity verbosity = verbosity();
+        if(verbosity != Verbosity.QUIET){
+            printSummary(loadBalance);
+            if(sampleNodes > 0){
+                printSample(sampleNodes);
+            } else if(verbosity == Verbosity.VERBOSE){
+                printRing();
+                printNetwork();
+            }
+        }
 
         // Generate output filename based on node count and m value
         String outputFileName = String.format("output/nodes_%d_m_%d.txt", nodeCount, m);
         
+        LookupCounters counters = null;
+        if(countersFormat != null && protocol instanceof ChordProtocol){
+            counters = new LookupCounters(m);
+            ((ChordProtocol) protocol).counters = counters;
+        }
+
         // Perform lookups and write results to file
         testLookUpAndWriteToFile(outputFileName);
+
+        if(counters != null){
+            writeCounters(counters.snapshot(((ChordProtocol) protocol).ring),
+                    String.format("output/nodes_%d_m_%d", nodeCount, m));
+        }
+    }
+
+
+
+    /**
+     * This method writes the lookup counters. As json they go to <prefix>_counters.json, as csv the node counters go
+     * to <prefix>_node_counters.csv and the finger level counters to <prefix>_finger_counters.csv.
+     *
+     * @param snapshot the counters
+     * @param prefix path and start of the file names
+     */
+    public void writeCounters(LookupCounters.Snapshot snapshot, String prefix){
+        Map<String, String> files = new LinkedHashMap<>();
+        if("json".equals(countersFormat)){
+            files.put(prefix + "_counters.json", snapshot.toJson());
+        } else {
+            files.put(prefix + "_node_counters.csv", snapshot.nodesCsv());
+            files.put(prefix + "_finger_counters.csv", snapshot.levelsCsv());
+        }
+        for(Map.Entry<String, String> file : files.entrySet()){
+            try {
+                Files.write(Paths.get(file.getKey()), file.getValue().getBytes(StandardCharsets.UTF_8));
+                if(verbosity() != Verbosity.QUIET){
+                    System.out.println("Lookup counters written to: " + file.getKey());
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to file: " + file.getKey());
+                e.printStackTrace();
+            }
+        }
     }
 
 }
@@ -0,0 +1,282 @@
+import p2p.NodeInterface;
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+import protocol.LookUpResponse;
+import protocol.LookupResult;
+import simulation.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs the lookups of all the keys of a simulation and formats the output records. The keys are split into
+ * chunks of consecutive keys. Each chunk is evaluated on its own (by a worker thread, or by the calling thread if only
+ * one thread is used) and collects its formatted records, console messages and its own hop count and lookup time
+ * histograms, which are merged when the chunks are written. The chunks are
+ * handed on in key order, so writing them one after the other gives exactly the same output as looking up the keys one
+ * by one. Only a few chunks per thread are evaluated ahead of the one that is handed on, so the formatted records of
+ * all the keys are never in memory at once.
+ *
+ * Lookups only read the ring and the finger tables, so they can run in parallel once the protocol is built.
+ */
+class LookupEvaluator {
+
+    // a chunk is never smaller than this, so small runs are not split into tiny tasks
+    private static final int MIN_CHUNK = 256;
+
+    // number of chunks per thread, more chunks than threads evens out chunks that take longer
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // a chunk is never larger than this, so its records stay small and its buffer can be reused
+    private static final int MAX_CHUNK = 1 << 12;
+
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private final ChordProtocolSimulator simulator;
+    private final String[] keyNames;
+    private final int[] keyIndexes;
+
+    // if false the chord lookups don't record routes and the chunks get no records and console messages, only the
+    // counts and histograms (used by the scalability sweep to time the routing alone)
+    boolean formatRecords = true;
+
+    // if false the chunks get no "lookup successful" console messages (see Verbosity)
+    boolean consoleMessages = true;
+
+    // if set, the records are formatted into buffers of the route writer, which reuses them once they are written
+    RouteWriter writer;
+
+    // if set, a binary trace record of each lookup is appended to buffers of this writer (see LookupTrace)
+    RouteWriter traceWriter;
+
+    // the encoded node names of the chord ring, made by run() if the records are formatted
+    private RouteWriter.Names names;
+
+    /**
+     * result of the lookups of a range of keys
+     */
+    static final class Chunk {
+        // formatted output records, one line per successful lookup
+        final RouteWriter.Buffer records;
+        // binary trace records, one per successful lookup. null if no trace is written
+        RouteWriter.Buffer trace;
+        // console messages ("lookup successful for ...")
+        final StringBuilder console = new StringBuilder();
+        // number of successful lookups, their hop counts and how long each lookup took in nanoseconds
+        int count;
+        final Histogram hops = new Histogram();
+        final Histogram nanos = new Histogram();
+        // name of the key whose lookup failed, the chunk stops at it. null if all lookups succeeded
+        String failedKey;
+        // true if the protocol returned no response (or the chord lookup failed) for failedKey
+        boolean noResponse;
+
+        Chunk(RouteWriter.Buffer records){
+            this.records = records;
+        }
+    }
+
+    /**
+     * receives the evaluated chunks in key order
+     */
+    interface ChunkConsumer {
+        /**
+         * @param chunk the next chunk
+         * @return false to stop the evaluation, no more chunks are handed on
+         * @throws IOException if the chunk can't be written
+         */
+        boolean accept(Chunk chunk) throws IOException;
+    }
+
+    /**
+     * @param simulator the simulator whose keys are looked up. the protocol must already be built
+     */
+    LookupEvaluator(ChordProtocolSimulator simulator){
+        this.simulator = simulator;
+        int size = simulator.keyIndexes.size();
+        this.keyNames = new String[size];
+        this.keyIndexes = new int[size];
+        int i = 0;
+        for(Map.Entry<String, Integer> entry : simulator.keyIndexes.entrySet()){
+            keyNames[i] = entry.getKey();
+            keyIndexes[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * looks up all the keys
+     * @param threads number of worker threads, 1 evaluates everything on the calling thread
+     * @return the chunks in key order
+     */
+    List<Chunk> run(int threads){
+        List<Chunk> chunks = new ArrayList<>();
+        try {
+            run(threads, chunks::add);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // adding to a list doesn't throw
+        }
+        return chunks;
+    }
+
+    /**
+     * looks up all the keys and hands the chunks to the consumer in key order, on the calling thread
+     * @param threads number of worker threads, 1 evaluates everything on the calling thread
+     * @param consumer receives the chunks, it can stop the evaluation
+     * @throws IOException if the consumer can't write a chunk
+     */
+    void run(int threads, ChunkConsumer consumer) throws IOException {
+        if(formatRecords && simulator.protocol instanceof ChordProtocol){
+            names = new RouteWriter.Names(((ChordProtocol) simulator.protocol).ring);
+        }
+        int size = keyIndexes.length;
+        if(threads <= 1 || size <= MIN_CHUNK){
+            for(int from = 0; from < size; from += MAX_CHUNK){
+                if(!consumer.accept(evaluate(from, Math.min(size, from + MAX_CHUNK)))){
+                    return;
+                }
+            }
+            return;
+        }
+
+        int chunkSize = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK,
+                (size + threads * CHUNKS_PER_THREAD - 1) / (threads * CHUNKS_PER_THREAD)));
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            // the chunks being evaluated, at most CHUNKS_PER_THREAD per thread
+            Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            int next = 0;
+            while(next < size || !pending.isEmpty()){
+                while(next < size && pending.size() < threads * CHUNKS_PER_THREAD){
+                    int start = next;
+                    int end = Math.min(size, next + chunkSize);
+                    pending.add(workers.submit(() -> evaluate(start, end)));
+                    next = end;
+                }
+                if(!consumer.accept(pending.poll().get())){
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("lookup evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("lookup evaluation failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * looks up the keys from ... to-1. stops at the first lookup that fails.
+     */
+    Chunk evaluate(int from, int to){
+        Chunk chunk = new Chunk(writer != null ? writer.buffer() : new RouteWriter.Buffer(formatRecords ? 1 << 16 : 0));
+        if(traceWriter != null){
+            chunk.trace = traceWriter.buffer();
+        }
+        if(simulator.protocol instanceof ChordProtocol){
+            evaluateOnRing((ChordProtocol) simulator.protocol, chunk, from, to);
+        } else {
+            evaluateResponses(chunk, from, to);
+        }
+        return chunk;
+    }
+
+    // fast path for the chord protocol: lookups write into one reused result and names are read from the ring
+    private void evaluateOnRing(ChordProtocol chord, Chunk chunk, int from, int to){
+        ChordRing ring = chord.ring;
+        LookupResult result = new LookupResult(formatRecords || chunk.trace != null);
+        for(int k = from; k < to; k++){
+            long start = System.nanoTime();
+            chord.lookUp(keyIndexes[k], result);
+            long elapsed = System.nanoTime() - start;
+            // the routing found no node (a failed node on the route), the same as a null response
+            if(result.isFailed()){
+                chunk.failedKey = keyNames[k];
+                chunk.noResponse = true;
+                return;
+            }
+            NodeInterface node = ring.nodeAt(result.getDestination());
+
+            // Check whether the returned node is correct or not
+            if(!node.containsData(keyIndexes[k])){
+                chunk.failedKey = keyNames[k];
+                return;
+            }
+            // hops are counted and listed per physical node, tokens of one node visited in a row count once
+            int hopCount = result.getPhysicalHopCount();
+            if(chunk.trace != null){
+                LookupTrace.appendRecord(chunk.trace, keyIndexes[k], result, ring.ordinalLimit());
+            }
+            if(!formatRecords){
+                chunk.count++;
+                chunk.hops.record(hopCount);
+                chunk.nanos.record(elapsed);
+                continue;
+            }
+            RouteWriter.Buffer records = chunk.records;
+            records.append(keyNames[k]).append(':').append(keyIndexes[k]).append(' ')
+                    .appendName(names, ring.ownerOf(result.getDestination())).append(':')
+                    .append(ring.idAt(result.getDestination()))
+                    .append(" hop count: ").append(hopCount).append(", route: ");
+            int lastOwner = -1;
+            for(int hop = 0; hop < result.getHopCount(); hop++){
+                int ordinal = result.getPathOrdinal(hop);
+                if(ring.ownerOf(ordinal) == lastOwner){
+                    continue;
+                }
+                if(lastOwner >= 0){
+                    records.append(' ');
+                }
+                lastOwner = ring.ownerOf(ordinal);
+                records.appendName(names, lastOwner);
+            }
+            records.newLine();
+            chunk.count++;
+            chunk.hops.record(hopCount);
+            chunk.nanos.record(elapsed);
+            if(consoleMessages){
+                chunk.console.append("lookup successful for ").append(keyNames[k]).append(NEW_LINE);
+            }
+        }
+    }
+
+    // any other protocol: uses the LookUpResponse of the protocol
+    private void evaluateResponses(Chunk chunk, int from, int to){
+        for(int k = from; k < to; k++){
+            long start = System.nanoTime();
+            LookUpResponse response = simulator.protocol.lookUp(keyIndexes[k]);
+            long elapsed = System.nanoTime() - start;
+            if(response == null){
+                chunk.failedKey = keyNames[k];
+                chunk.noResponse = true;
+                return;
+            }
+            if(!simulator.checkResponse(keyIndexes[k], response.node_name)){
+                chunk.failedKey = keyNames[k];
+                return;
+            }
+            int hopCount = response.peers_looked_up.size();
+            chunk.records.append(keyNames[k]).append(':').append(keyIndexes[k]).append(' ')
+                    .append(response.node_name).append(':').append(response.node_index)
+                    .append(" hop count: ").append(hopCount).append(", route: ")
+                    .append(String.join(" ", response.peers_looked_up).trim())
+                    .newLine();
+            chunk.count++;
+            chunk.hops.record(hopCount);
+            chunk.nanos.record(elapsed);
+            if(consoleMessages){
+                chunk.console.append("lookup successful for ").append(keyNames[k]).append(NEW_LINE);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import protocol.ChordRing;
+import protocol.LookupResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class defines the binary lookup trace, a compact alternative to the text route file. All numbers are unsigned
+ * varints (7 bits per byte, lowest group first, the high bit is set on every byte but the last), so small numbers take
+ * one byte.
+ *
+ *     header:
+ *         MAGIC                                  8 bytes "CHORDTRC"
+ *         version                                VERSION
+ *         m                                      length of the identifier
+ *         nodes                                  number of physical nodes P
+ *         P times: name length, name             name of each physical node in UTF-8, length 0 for a removed node
+ *         ordinals                               number of ordinals O (the ordinal limit of the ring)
+ *         O times: owner + 1, id                 physical node and index of each ordinal, owner + 1 = 0 for a free one
+ *     records, one per successful lookup until the end of the file:
+ *         key index
+ *         destination ordinal
+ *         route length                           number of visited ordinals, including the first and the last
+ *         route length times: step              (ordinal - previous ordinal) mod O, the previous of the first is 0
+ *
+ * The route is stored as forward steps because the fingers always move forward on the ring, so the steps get smaller
+ * along the route and most of them fit into one or two bytes. The n-th record is the lookup of the n-th key of the
+ * simulation ("key n"), the lookups stop at the first one that fails, the same as the route file. A record takes
+ * about an eighth of its text line (23 bytes against 171 at N=100000, m=24), with the header the trace is about a
+ * sixth of the text file, and nothing is formatted while the lookups run.
+ *
+ * The header is written with writeHeader() and the records are appended to the lookup chunks with appendRecord(),
+ * both through a RouteWriter. LookupTraceReader reads a trace back.
+ */
+class LookupTrace {
+
+    static final byte[] MAGIC = "CHORDTRC".getBytes(StandardCharsets.US_ASCII);
+
+    static final int VERSION = 1;
+
+    private LookupTrace(){
+    }
+
+    /**
+     * writes the header of the ring
+     * @param writer the writer of the trace file, nothing must have been written yet
+     * @param ring the ring the lookups run on
+     * @throws IOException if writing failed
+     */
+    static void writeHeader(RouteWriter writer, ChordRing ring) throws IOException {
+        RouteWriter.Buffer header = writer.buffer();
+        header.appendBytes(MAGIC);
+        header.appendVarint(VERSION).appendVarint(ring.m);
+        String[] names = RouteWriter.Names.physicalNames(ring);
+        header.appendVarint(names.length);
+        for(String name : names){
+            byte[] encoded = name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+            header.appendVarint(encoded.length).appendBytes(encoded);
+        }
+        header.appendVarint(ring.ordinalLimit());
+        for(int ordinal = 0; ordinal < ring.ordinalLimit(); ordinal++){
+            boolean live = ring.isLive(ordinal);
+            header.appendVarint(live ? ring.ownerOf(ordinal) + 1 : 0).appendVarint(live ? ring.idAt(ordinal) : 0);
+        }
+        writer.write(header);
+    }
+
+    /**
+     * appends the record of a lookup
+     * @param trace the buffer of the records
+     * @param keyIndex index of the key that was looked up
+     * @param result the result of the lookup, with the route recorded
+     * @param ordinals the ordinal limit of the ring
+     */
+    static void appendRecord(RouteWriter.Buffer trace, int keyIndex, LookupResult result, int ordinals){
+        trace.appendVarint(keyIndex).appendVarint(result.getDestination()).appendVarint(result.getHopCount());
+        int previous = 0;
+        for(int hop = 0; hop < result.getHopCount(); hop++){
+            int ordinal = result.getPathOrdinal(hop);
+            trace.appendVarint(Math.floorMod(ordinal - previous, ordinals));
+            previous = ordinal;
+        }
+    }
+}
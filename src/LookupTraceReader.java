@@ -0,0 +1,251 @@
+import simulation.Histogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads a binary lookup trace (see LookupTrace) one record at a time. The file is memory mapped in windows
+ * of WINDOW bytes, so traces of any size are read without copying them into the heap, and next() only decodes varints
+ * into the fields of the reader, nothing is allocated per record.
+ *
+ * It can also be run on its own:
+ *
+ *     java LookupTraceReader stats FILE         prints the number of lookups and the hop count statistics
+ *     java LookupTraceReader text FILE OUTPUT   converts the trace to the text route file, the same file the lookups
+ *                                               would have written
+ */
+public class LookupTraceReader implements Closeable {
+
+    // size of the mapped windows of the file
+    static final long WINDOW = 1L << 28;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    // length of the identifier
+    public final int m;
+
+    // name of each physical node, null for removed nodes
+    public final String[] names;
+
+    // physical node and index of each ordinal, owner -1 for free ordinals
+    public final int[] owners;
+    public final int[] ids;
+
+    // the record read by the last next(): number of the key (0 is "key 1"), key index, destination ordinal and route
+    public long keyNumber = -1;
+    public int keyIndex;
+    public int destination;
+    public int routeLength;
+    public int[] route = new int[32];
+
+    /**
+     * opens the trace and reads the header
+     * @param file the trace file
+     * @throws IOException if the file can't be read or is not a lookup trace
+     */
+    public LookupTraceReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+        try {
+            for(byte b : LookupTrace.MAGIC){
+                if(!hasMore() || readByte() != b){
+                    throw new IOException(file + " is not a lookup trace");
+                }
+            }
+            int version = readInt();
+            if(version != LookupTrace.VERSION){
+                throw new IOException(file + " has the unknown trace version " + version);
+            }
+            this.m = readInt();
+            this.names = new String[readInt()];
+            byte[] name = new byte[64];
+            for(int p = 0; p < names.length; p++){
+                int length = readInt();
+                if(length > name.length){
+                    name = new byte[length];
+                }
+                for(int i = 0; i < length; i++){
+                    name[i] = readByte();
+                }
+                names[p] = length == 0 ? null : new String(name, 0, length, StandardCharsets.UTF_8);
+            }
+            this.owners = new int[readInt()];
+            this.ids = new int[owners.length];
+            for(int ordinal = 0; ordinal < owners.length; ordinal++){
+                owners[ordinal] = readInt() - 1;
+                ids[ordinal] = readInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * reads the next record into keyNumber, keyIndex, destination, routeLength and route
+     * @return false at the end of the trace
+     * @throws IOException if the file can't be read or ends in the middle of a record
+     */
+    public boolean next() throws IOException {
+        if(!hasMore()){
+            return false;
+        }
+        keyNumber++;
+        keyIndex = readInt();
+        destination = readInt();
+        routeLength = readInt();
+        if(routeLength > route.length){
+            route = Arrays.copyOf(route, Math.max(routeLength, route.length * 2));
+        }
+        int ordinal = 0;
+        for(int hop = 0; hop < routeLength; hop++){
+            ordinal = (int) ((ordinal + (long) readInt()) % owners.length);
+            route[hop] = ordinal;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of physical nodes on the route of the last record, tokens of one node visited in a row count
+     *     once. It is the hop count of the text route file
+     */
+    public int physicalHopCount(){
+        int hops = 0;
+        int lastOwner = -1;
+        for(int hop = 0; hop < routeLength; hop++){
+            if(owners[route[hop]] != lastOwner){
+                hops++;
+                lastOwner = owners[route[hop]];
+            }
+        }
+        return hops;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * reads the rest of the trace and records the hop count of every lookup
+     * @return the hop counts
+     * @throws IOException if the file can't be read
+     */
+    public Histogram hopCounts() throws IOException {
+        Histogram hops = new Histogram();
+        while(next()){
+            hops.record(physicalHopCount());
+        }
+        return hops;
+    }
+
+    /**
+     * converts the rest of the trace to the text format of the route file
+     * @param output the text file
+     * @throws IOException if a file can't be read or written
+     */
+    public void writeText(Path output) throws IOException {
+        RouteWriter.Names encodedNames = new RouteWriter.Names(names);
+        Histogram hops = new Histogram();
+        try (RouteWriter writer = new RouteWriter(output, false)) {
+            RouteWriter.Buffer records = writer.buffer();
+            while(next()){
+                int hopCount = physicalHopCount();
+                hops.record(hopCount);
+                records.append("key ").append(keyNumber + 1).append(':').append(keyIndex).append(' ')
+                        .appendName(encodedNames, owners[destination]).append(':').append(ids[destination])
+                        .append(" hop count: ").append(hopCount).append(", route: ");
+                int lastOwner = -1;
+                for(int hop = 0; hop < routeLength; hop++){
+                    if(owners[route[hop]] == lastOwner){
+                        continue;
+                    }
+                    if(lastOwner >= 0){
+                        records.append(' ');
+                    }
+                    lastOwner = owners[route[hop]];
+                    records.appendName(encodedNames, lastOwner);
+                }
+                records.newLine();
+                if(records.length >= RouteWriter.CHANNEL_BUFFER_SIZE){
+                    writer.write(records);
+                    records = writer.buffer();
+                }
+            }
+            writer.write(records);
+            if(hops.count() > 0){
+                writer.write(String.format("%naverage hop count: %.2f%n", hops.mean()));
+            }
+        }
+    }
+
+    private boolean hasMore(){
+        return windowStart + window.position() < size;
+    }
+
+    // maps the window that starts at the given position of the file
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+    }
+
+    private byte readByte() throws IOException {
+        if(!window.hasRemaining()){
+            if(!hasMore()){
+                throw new IOException("the trace ends in the middle of a record");
+            }
+            map(windowStart + window.position());
+        }
+        return window.get();
+    }
+
+    private int readInt() throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            byte b = readByte();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0){
+                return value;
+            }
+        }
+        throw new IOException("varint is too long");
+    }
+
+    /**
+     * prints the hop statistics of a trace or converts it to the text route file
+     * @param args "stats FILE" or "text FILE OUTPUT"
+     */
+    public static void main(String[] args){
+        if(args.length < 2 || !(args[0].equals("stats") || (args[0].equals("text") && args.length >= 3))){
+            System.out.println("Usage: java LookupTraceReader stats FILE | text FILE OUTPUT");
+            return;
+        }
+        try (LookupTraceReader reader = new LookupTraceReader(Paths.get(args[1]))) {
+            if(args[0].equals("text")){
+                reader.writeText(Paths.get(args[2]));
+                System.out.println("Results written to: " + args[2]);
+                return;
+            }
+            Histogram hops = reader.hopCounts();
+            System.out.printf("Trace: %d nodes, m = %d, %d lookups%n", reader.names.length, reader.m, hops.count());
+            if(hops.count() > 0){
+                System.out.printf("Average hop count: %.2f%n", hops.mean());
+                System.out.println("Hop count " + hops.percentiles(1));
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading trace: " + args[1]);
+            e.printStackTrace();
+        }
+    }
+}
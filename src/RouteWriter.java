@@ -0,0 +1,331 @@
+import p2p.NodeInterface;
+import protocol.ChordRing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class writes the lookup records of the route file. The records are formatted into Buffers (growable byte
+ * arrays with append methods for the parts of a record, nothing goes through String.format or a Writer), and the
+ * buffers are copied into one large ByteBuffer that is written to a FileChannel whenever it is full.
+ *
+ * Buffers are taken with buffer() and handed back with write(), which puts them into a pool once they are written, so
+ * the lookups keep reusing the same few byte arrays. Without a writer thread write() copies the buffer on the calling
+ * thread. With a writer thread write() puts the buffer into a bounded queue and the writer thread does the copying and
+ * the file writes; when the queue is full write() waits, so the lookups can't run ahead of the disk by more than
+ * queueCapacity buffers. Either way the buffers are written in the order write() was called.
+ *
+ * The node names of a route are copied from Names, one byte array with the encoded names of all the nodes of the
+ * ring, so formatting a route doesn't have to visit the node objects and their strings all over the heap.
+ *
+ * Text is encoded with the default charset and lines end with the line separator, the same as the PrintWriter the
+ * route file used to be written with, so the file doesn't change.
+ */
+class RouteWriter implements Closeable {
+
+    // size of the buffer of the file channel
+    static final int CHANNEL_BUFFER_SIZE = 1 << 20;
+
+    // buffers the writer thread may be behind
+    static final int QUEUE_CAPACITY = 16;
+
+    private static final byte[] NEW_LINE = System.lineSeparator().getBytes(Charset.defaultCharset());
+
+    // written by the writer thread after the last buffer, it is never filled
+    private static final Buffer END = new Buffer(0);
+
+    private final FileChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(CHANNEL_BUFFER_SIZE);
+
+    // buffers that have been written and can be filled again
+    private final ConcurrentLinkedQueue<Buffer> free = new ConcurrentLinkedQueue<>();
+
+    // buffers waiting for the writer thread, null without a writer thread
+    private final BlockingQueue<Buffer> queue;
+    private final Thread writerThread;
+
+    // the first error of the writer thread, rethrown by the next write() or close()
+    private volatile IOException error;
+
+    /**
+     * A growable byte array that one lookup record after the other is appended to.
+     */
+    static final class Buffer {
+        byte[] bytes;
+        int length;
+
+        Buffer(int capacity){
+            this.bytes = new byte[capacity];
+        }
+
+        Buffer(){
+            this(1 << 16);
+        }
+
+        void clear(){
+            length = 0;
+        }
+
+        private void ensure(int extra){
+            if(length + extra > bytes.length){
+                byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+                System.arraycopy(bytes, 0, grown, 0, length);
+                bytes = grown;
+            }
+        }
+
+        Buffer append(char c){
+            if(c >= 0x80){
+                return append(String.valueOf(c));
+            }
+            ensure(1);
+            bytes[length++] = (byte) c;
+            return this;
+        }
+
+        // ascii text is copied char by char, any other text is encoded with the default charset
+        Buffer append(String text){
+            int n = text.length();
+            ensure(n);
+            byte[] b = bytes;
+            int at = length;
+            for(int i = 0; i < n; i++){
+                char c = text.charAt(i);
+                if(c >= 0x80){
+                    length = at;
+                    return appendBytes(text.substring(i).getBytes(Charset.defaultCharset()));
+                }
+                b[at++] = (byte) c;
+            }
+            length = at;
+            return this;
+        }
+
+        Buffer appendBytes(byte[] b){
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+            return this;
+        }
+
+        // the decimal digits of the value, without allocating
+        Buffer append(long value){
+            if(value < 0){
+                if(value == Long.MIN_VALUE){
+                    return append(Long.toString(value));
+                }
+                append('-');
+                value = -value;
+            }
+            int digits = 1;
+            for(long v = value; v >= 10; v /= 10){
+                digits++;
+            }
+            ensure(digits);
+            for(int i = length + digits - 1; i >= length; i--){
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+            return this;
+        }
+
+        Buffer newLine(){
+            return appendBytes(NEW_LINE);
+        }
+
+        // the value in 7 bit groups, lowest first, with the high bit set on every byte but the last (unsigned LEB128)
+        Buffer appendVarint(long value){
+            ensure(10);
+            while((value & ~0x7FL) != 0){
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        // the name of physical node p
+        Buffer appendName(Names names, int p){
+            int from = names.offsets[p];
+            int n = names.offsets[p + 1] - from;
+            ensure(n);
+            System.arraycopy(names.bytes, from, bytes, length, n);
+            length += n;
+            return this;
+        }
+    }
+
+    /**
+     * The encoded names of the physical nodes of a ring, one after the other in one byte array. Node p is
+     * bytes[offsets[p] ... offsets[p+1]-1], removed nodes have an empty name.
+     */
+    static final class Names {
+        final byte[] bytes;
+        final int[] offsets;
+
+        Names(ChordRing ring){
+            this(physicalNames(ring));
+        }
+
+        /**
+         * @param names name of each physical node, null for removed nodes
+         */
+        Names(String[] names){
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            offsets = new int[names.length + 1];
+            for(int p = 0; p < names.length; p++){
+                if(names[p] != null){
+                    byte[] name = names[p].getBytes(Charset.defaultCharset());
+                    encoded.write(name, 0, name.length);
+                }
+                offsets[p + 1] = encoded.size();
+            }
+            bytes = encoded.toByteArray();
+        }
+
+        // name of each physical node of the ring, null for removed nodes
+        static String[] physicalNames(ChordRing ring){
+            String[] names = new String[ring.physicalLimit()];
+            for(int p = 0; p < names.length; p++){
+                NodeInterface node = ring.physicalNode(p);
+                names[p] = node == null ? null : node.getName();
+            }
+            return names;
+        }
+    }
+
+    /**
+     * opens the file, an existing file is overwritten
+     * @param file the route file
+     * @param writerThread true to write on a dedicated thread behind a bounded queue
+     * @throws IOException if the file can't be opened
+     */
+    RouteWriter(Path file, boolean writerThread) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        if(writerThread){
+            this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            this.writerThread = new Thread(this::drain, "route writer");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+        } else {
+            this.queue = null;
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * @return an empty buffer to format records into, it must be handed to write(). can be called from any thread
+     */
+    Buffer buffer(){
+        Buffer buffer = free.poll();
+        return buffer != null ? buffer : new Buffer();
+    }
+
+    /**
+     * writes the buffer after the buffers written before. The buffer must not be used any more by the caller.
+     * @param buffer the records
+     * @throws IOException if writing failed, here or earlier on the writer thread
+     */
+    void write(Buffer buffer) throws IOException {
+        checkError();
+        if(queue == null){
+            copy(buffer);
+            return;
+        }
+        try {
+            queue.put(buffer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the route writer", e);
+        }
+    }
+
+    /**
+     * writes text after the buffers written before, eg:- the average hop count at the end of the file
+     * @param text the text
+     * @throws IOException if writing failed
+     */
+    void write(String text) throws IOException {
+        write(buffer().append(text));
+    }
+
+    /**
+     * waits for the writer thread, writes what is left in the channel buffer and closes the file
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if(writerThread != null){
+                try {
+                    queue.put(END);
+                    writerThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for the route writer", e);
+                }
+            }
+            checkError();
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // the writer thread: writes the queued buffers until END
+    private void drain(){
+        try {
+            for(Buffer buffer = queue.take(); buffer != END; buffer = queue.take()){
+                if(error == null){
+                    try {
+                        copy(buffer);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            error = new IOException("route writer was interrupted", e);
+        }
+    }
+
+    // copies the buffer into the channel buffer, writing the channel buffer whenever it is full, and frees the buffer
+    private void copy(Buffer buffer) throws IOException {
+        int offset = 0;
+        while(offset < buffer.length){
+            if(!out.hasRemaining()){
+                flush();
+            }
+            int n = Math.min(out.remaining(), buffer.length - offset);
+            out.put(buffer.bytes, offset, n);
+            offset += n;
+        }
+        buffer.clear();
+        free.add(buffer);
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while(out.hasRemaining()){
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private void checkError() throws IOException {
+        if(error != null){
+            throw error;
+        }
+    }
+}
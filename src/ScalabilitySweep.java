@@ -0,0 +1,338 @@
+import p2p.Network;
+import protocol.ChordProtocol;
+import protocol.NodeIndex;
+import simulation.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class runs the scalability sweep: the chord protocol is built and all keys are looked up for every combination
+ * of the node counts, m values and key counts of the options. Every configuration is run --warmup times to let the JIT
+ * compile the hot paths and then --iterations times measured, all in this JVM. A run is timed in five phases:
+ *
+ *     hash     - hashing the nodes into the node index and generating the key indexes
+ *     ring     - building the ring and the successors from the node index
+ *     fingers  - building the finger tables
+ *     assign   - assigning the keys to the nodes
+ *     lookups  - looking up every key from the first node, with the simulator's lookup threads and without formatting
+ *                the routes
+ *
+ * Memory is measured per run: the peak heap is the sum of the peak usage of the heap pools (reset before the run, so
+ * it can be a little more than the heap used at any single moment), and the bytes per node are the heap still used
+ * after a gc at the end of the run minus the heap used before it, divided by the node count. The phase times and bytes
+ * per node of the measured runs are averaged, the peak heap is the largest of them. The heap can shrink over a run
+ * (a gc frees garbage of the run before), then the bytes per node are not known and are reported as empty (null in
+ * json, n/a on the console). The ring bytes per node are computed from the arrays of the ring and don't depend on the
+ * gc. Hop statistics are per physical node, the same as in the route file, and come from the last run (the lookups are
+ * the same in every run).
+ *
+ * The results go to output/sweep.csv or output/sweep.json, one row per configuration.
+ */
+class ScalabilitySweep {
+
+    static final String[] PHASES = {"hash", "ring", "fingers", "assign", "lookups"};
+
+    private final SimulatorOptions options;
+
+    /**
+     * the results of one configuration
+     */
+    static final class Result {
+        final int nodes;
+        final int m;
+        final int keys;
+        int iterations;
+        // sum of the phase times of the measured runs in nanoseconds, indexed like PHASES
+        final long[] phaseNanos = new long[PHASES.length];
+        long peakHeapBytes;
+        long retainedBytes;
+        // true if the heap shrank over one of the measured runs, the retained bytes are meaningless then
+        boolean retainedUnknown;
+        long ringBytes;
+        Histogram hops = new Histogram();
+        // name of the first key whose lookup returned the wrong node, null if all lookups succeeded
+        String failedKey;
+
+        Result(int nodes, int m, int keys){
+            this.nodes = nodes;
+            this.m = m;
+            this.keys = keys;
+        }
+
+        double phaseMillis(int phase){
+            return iterations == 0 ? 0.0 : phaseNanos[phase] / 1e6 / iterations;
+        }
+
+        double totalMillis(){
+            double total = 0;
+            for(int phase = 0; phase < PHASES.length; phase++){
+                total += phaseMillis(phase);
+            }
+            return total;
+        }
+
+        double lookupsPerSecond(){
+            double millis = phaseMillis(PHASES.length - 1);
+            return millis == 0 ? 0.0 : hops.count() / (millis / 1e3);
+        }
+
+        /**
+         * @return the average heap retained per node, NaN if it is not known
+         */
+        double bytesPerNode(){
+            if(retainedUnknown){
+                return Double.NaN;
+            }
+            return iterations == 0 ? 0.0 : (double) retainedBytes / iterations / nodes;
+        }
+
+        // the bytes per node formatted with the pattern, or the text if they are not known
+        String bytesPerNode(String pattern, String unknown){
+            return retainedUnknown ? unknown : String.format(Locale.ROOT, pattern, bytesPerNode());
+        }
+
+        double ringBytesPerNode(){
+            return (double) ringBytes / nodes;
+        }
+
+        /**
+         * @return one line summary of the phase times, memory and hops
+         */
+        public String toString(){
+            StringBuilder line = new StringBuilder(String.format("N=%d m=%d keys=%d:", nodes, m, keys));
+            for(int phase = 0; phase < PHASES.length; phase++){
+                line.append(String.format(" %s %.2f ms", PHASES[phase], phaseMillis(phase)));
+            }
+            line.append(String.format(", peak heap %.1f MB, %s bytes/node, ring %.0f bytes/node, hops mean %.2f p99 %d",
+                    peakHeapBytes / 1e6, bytesPerNode("%.0f", "n/a"), ringBytesPerNode(), hops.mean(),
+                    hops.percentile(99)));
+            if(failedKey != null){
+                line.append(", lookup failed for ").append(failedKey);
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * @param options the sweep ranges, the iterations and the options every configuration is built with (hash
+     *     function, finger build, threads, virtual nodes, ...)
+     */
+    ScalabilitySweep(SimulatorOptions options){
+        this.options = options;
+    }
+
+    /**
+     * runs every configuration and prints a summary line for each
+     * @param out where the summaries are printed
+     * @return the results in the order they were run
+     */
+    List<Result> run(PrintStream out){
+        List<Result> results = new ArrayList<>();
+        for(int nodes : options.sweepNodes){
+            for(int m : options.sweepM){
+                int[] keyCounts = options.sweepKeys != null ? options.sweepKeys
+                        : new int[]{Simulator.keyCount(nodes, m)};
+                for(int keys : keyCounts){
+                    Result result = measure(nodes, m, keys);
+                    out.println(result);
+                    results.add(result);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * runs one configuration, first the warmup runs and then the measured runs
+     */
+    Result measure(int nodes, int m, int keys){
+        Result result = new Result(nodes, m, keys);
+        for(int i = 0; i < options.warmupIterations + options.measuredIterations; i++){
+            boolean measured = i >= options.warmupIterations;
+            runOnce(result, measured);
+            if(measured){
+                result.iterations++;
+            }
+        }
+        return result;
+    }
+
+    // builds the protocol once, looks up every key and adds the times and memory to the result if it is measured
+    private void runOnce(Result result, boolean measured){
+        List<MemoryPoolMXBean> heapPools = heapPools();
+        System.gc();
+        long heapBefore = usedHeap(heapPools);
+        for(MemoryPoolMXBean pool : heapPools){
+            pool.resetPeakUsage();
+        }
+
+        Network network = Network.createNetwork("sweep network", result.nodes);
+        ChordProtocolSimulator simulator = ChordProtocolSimulator.getInstance(network, result.m, result.keys,
+                options.hashFunction);
+        simulator.configure(options);
+        ChordProtocol chordProtocol = (ChordProtocol) simulator.protocol;
+        chordProtocol.setNetwork(network);
+        long[] nanos = new long[PHASES.length];
+
+        long start = System.nanoTime();
+        NodeIndex index = simulator.getNodeIndex();
+        simulator.generateKeys();
+        nanos[0] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        chordProtocol.buildOverlayNetwork(index);
+        nanos[1] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        chordProtocol.buildFingerTable();
+        nanos[2] = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        simulator.assignGeneratedKeys();
+        chordProtocol.setKeys(simulator.keyIndexes);
+        nanos[3] = System.nanoTime() - start;
+
+        LookupEvaluator evaluator = new LookupEvaluator(simulator);
+        evaluator.formatRecords = false;
+        start = System.nanoTime();
+        List<LookupEvaluator.Chunk> chunks = evaluator.run(simulator.threads);
+        nanos[4] = System.nanoTime() - start;
+
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : heapPools){
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        System.gc();
+        long retained = usedHeap(heapPools) - heapBefore;
+        // the simulator has to stay reachable until the heap is measured
+        Reference.reachabilityFence(simulator);
+
+        if(chordProtocol.pool != ForkJoinPool.commonPool()){
+            chordProtocol.pool.shutdown();
+        }
+        if(!measured){
+            return;
+        }
+        for(int phase = 0; phase < PHASES.length; phase++){
+            result.phaseNanos[phase] += nanos[phase];
+        }
+        result.peakHeapBytes = Math.max(result.peakHeapBytes, peakHeap);
+        result.retainedBytes += retained;
+        if(retained < 0){
+            result.retainedUnknown = true;
+        }
+        result.ringBytes = chordProtocol.ring.memoryBytes();
+        result.hops = new Histogram();
+        result.failedKey = null;
+        for(LookupEvaluator.Chunk chunk : chunks){
+            result.hops.merge(chunk.hops);
+            if(chunk.failedKey != null && result.failedKey == null){
+                result.failedKey = chunk.failedKey;
+            }
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools(){
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP && pool.isValid()){
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static long usedHeap(List<MemoryPoolMXBean> pools){
+        long used = 0;
+        for(MemoryPoolMXBean pool : pools){
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+
+    /**
+     * @param results the results of the sweep
+     * @return a header line and one line per configuration
+     */
+    static String toCsv(List<Result> results){
+        String newLine = System.lineSeparator();
+        StringBuilder csv = new StringBuilder("nodes,m,keys,iterations");
+        for(String phase : PHASES){
+            csv.append(',').append(phase).append("_ms");
+        }
+        csv.append(",total_ms,lookups_per_s,peak_heap_bytes,bytes_per_node,ring_bytes_per_node,hops_mean,hops_p50")
+                .append(",hops_p90,hops_p99,hops_max,failed_key").append(newLine);
+        for(Result result : results){
+            csv.append(result.nodes).append(',').append(result.m).append(',').append(result.keys).append(',')
+                    .append(result.iterations);
+            for(int phase = 0; phase < PHASES.length; phase++){
+                csv.append(String.format(Locale.ROOT, ",%.3f", result.phaseMillis(phase)));
+            }
+            csv.append(String.format(Locale.ROOT, ",%.3f,%.0f,%d,%s,%.1f,%.3f,%d,%d,%d,%d,%s", result.totalMillis(),
+                    result.lookupsPerSecond(), result.peakHeapBytes, result.bytesPerNode("%.1f", ""),
+                    result.ringBytesPerNode(),
+                    result.hops.mean(), result.hops.percentile(50), result.hops.percentile(90),
+                    result.hops.percentile(99), result.hops.max(), result.failedKey == null ? "" : result.failedKey))
+                    .append(newLine);
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @param results the results of the sweep
+     * @return the results as a json array, one object per configuration
+     */
+    static String toJson(List<Result> results){
+        String newLine = System.lineSeparator();
+        StringBuilder json = new StringBuilder("[");
+        for(int i = 0; i < results.size(); i++){
+            Result result = results.get(i);
+            json.append(i == 0 ? "" : ",").append(newLine).append(String.format(Locale.ROOT,
+                    "  {\"nodes\": %d, \"m\": %d, \"keys\": %d, \"iterations\": %d, \"phasesMs\": {",
+                    result.nodes, result.m, result.keys, result.iterations));
+            for(int phase = 0; phase < PHASES.length; phase++){
+                json.append(String.format(Locale.ROOT, "%s\"%s\": %.3f", phase == 0 ? "" : ", ", PHASES[phase],
+                        result.phaseMillis(phase)));
+            }
+            json.append(String.format(Locale.ROOT, "}, \"totalMs\": %.3f, \"lookupsPerSecond\": %.0f,"
+                            + " \"peakHeapBytes\": %d, \"bytesPerNode\": %s, \"ringBytesPerNode\": %.1f,"
+                            + " \"hops\": {\"mean\": %.3f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d},"
+                            + " \"failedKey\": %s}",
+                    result.totalMillis(), result.lookupsPerSecond(), result.peakHeapBytes,
+                    result.bytesPerNode("%.1f", "null"), result.ringBytesPerNode(), result.hops.mean(),
+                    result.hops.percentile(50), result.hops.percentile(90), result.hops.percentile(99),
+                    result.hops.max(), result.failedKey == null ? "null" : "\"" + result.failedKey + "\""));
+        }
+        return json.append(newLine).append("]").append(newLine).toString();
+    }
+
+    /**
+     * runs the sweep and writes the report to output/sweep.csv or output/sweep.json
+     * @param out where the summaries are printed
+     */
+    void runAndWrite(PrintStream out){
+        List<Result> results = run(out);
+        boolean json = "json".equals(options.sweepReport);
+        String fileName = json ? "output/sweep.json" : "output/sweep.csv";
+        try {
+            String report = json ? toJson(results) : toCsv(results);
+            Files.write(Paths.get(fileName), report.getBytes(StandardCharsets.UTF_8));
+            out.println("Sweep report written to: " + fileName);
+        } catch (IOException e) {
+            System.err.println("Error writing to file: " + fileName);
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,6 +1,15 @@
+import crypto.HashFunctionReport;
 import p2p.Network;
 import protocol.ChordProtocol;
+import protocol.LocationCache;
 import protocol.Protocol;
+import simulation.ChurnSimulation;
+import simulation.FailureSimulation;
+import simulation.LatencyModel;
+import simulation.LookupSimulation;
+import simulation.RingRepairSimulation;
+import simulation.Workload;
+import simulation.WorkloadSimulation;
 
 
 /**
@@ -53,31 +62,178 @@ public class Simulator{
      *             arg[1] - 'm' value: The length of the indexes generated using consistent hashing
      */
     public void start(int nodeCount, int m){
+        start(SimulatorOptions.of(nodeCount, m));
+    }
 
+    /**
+     * This method starts the simulator with the given command line options.
+     *
+     * @param options the options (node count, m, hash function, ...)
+     */
+    public void start(SimulatorOptions options){
+        int nodeCount = options.nodeCount;
+        int m = options.m;
 
-
-//        System.out.println("node count : "+nodeCount+"\t m : "+m);
         Network myNetwork = createNetwork("test network", nodeCount);
-//       System.out.println("network size: "+myNetwork.getSize());
 
+        // assigns random number of keys to test
+        int keyCount = keyCount(nodeCount, m);
 
+        // creates the chord protocol simulator object
+        ChordProtocolSimulator chordProtocolSimulator = ChordProtocolSimulator.getInstance(myNetwork, m, keyCount,
+                options.hashFunction);
+        chordProtocolSimulator.configure(options);
 
-        // assigns random number of keys to test
-        int keyCount=0;
-        if((nodeCount/2)<m)
-        {
-            keyCount=(int) nodeCount/2;
+        switch(options.run()){
+            case DES:
+                runEventSimulation(chordProtocolSimulator, options);
+                break;
+            case CHURN:
+                runChurnSimulation(chordProtocolSimulator, options);
+                break;
+            case REPAIR:
+                runRepairSimulation(chordProtocolSimulator, options);
+                break;
+            case FAILURES:
+                runFailureSimulation(chordProtocolSimulator, options);
+                break;
+            case WORKLOAD:
+                runWorkloadSimulation(chordProtocolSimulator, options);
+                break;
+            default:
+                // stars the chord protocol
+                chordProtocolSimulator.start();
         }
-        else
-        {
-            keyCount = nodeCount*3;
+    }
+
+    /**
+     * This method builds the chord protocol and runs the lookups of the keys as a discrete event simulation. It prints
+     * the latency percentiles and queue depths instead of writing the route file.
+     *
+     * @param chordProtocolSimulator the chord protocol simulator with the network
+     * @param options the options of the event simulation
+     */
+    public void runEventSimulation(ChordProtocolSimulator chordProtocolSimulator, SimulatorOptions options){
+        chordProtocolSimulator.buildProtocol();
+        ChordProtocol chordProtocol = (ChordProtocol) chordProtocolSimulator.protocol;
+
+        int[] keys = chordProtocolSimulator.keyIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+        if(keys.length == 0){
+            System.out.println("No keys to look up.");
+            return;
+        }
+        int lookups = options.lookups > 0 ? options.lookups : keys.length;
+        LatencyModel latencyModel = LatencyModel.parse(options.latencyModel, chordProtocol.ring.physicalLimit(),
+                options.seed);
+        LookupSimulation simulation = new LookupSimulation(chordProtocol, latencyModel, options.serviceTime,
+                options.arrivalRate, options.seed);
+        if(options.workload != null){
+            Workload workload = Workload.parse(options.workload, options.origins, keys, chordProtocol.ring,
+                    options.seed);
+            simulation.run(workload, lookups).print(System.out);
+        } else {
+            simulation.run(keys, lookups).print(System.out);
         }
+    }
 
-        // creates the chord protocol simulator object
-        ChordProtocolSimulator chordProtocolSimulator = ChordProtocolSimulator.getInstance(myNetwork, m, keyCount);
+    /**
+     * This method builds the chord protocol, then joins and removes nodes with the dynamic membership operations
+     * (join, leave, stabilize, notify, fix_fingers) and prints how fast the ring converges.
+     *
+     * @param chordProtocolSimulator the chord protocol simulator with the network
+     * @param options the options of the churn trace
+     */
+    public void runChurnSimulation(ChordProtocolSimulator chordProtocolSimulator, SimulatorOptions options){
+        chordProtocolSimulator.buildProtocol();
+        ChordProtocol chordProtocol = (ChordProtocol) chordProtocolSimulator.protocol;
+        int maxRounds = options.maxRounds > 0 ? options.maxRounds : 10 * options.m;
+        ChurnSimulation churn = new ChurnSimulation(chordProtocol, options.seed);
+        churn.stabilizeEvery = options.stabilizeEvery;
+        churn.run(options.churnJoins, options.churnLeaves, maxRounds).print(System.out);
+    }
+
+    /**
+     * This method builds the chord protocol, then adds and removes nodes on the ring with incremental finger repair
+     * and prints what each repair cost and whether the fingers match a full build.
+     *
+     * @param chordProtocolSimulator the chord protocol simulator with the network
+     * @param options the options of the repair trace
+     */
+    public void runRepairSimulation(ChordProtocolSimulator chordProtocolSimulator, SimulatorOptions options){
+        chordProtocolSimulator.buildProtocol();
+        ChordProtocol chordProtocol = (ChordProtocol) chordProtocolSimulator.protocol;
+        RingRepairSimulation repair = new RingRepairSimulation(chordProtocol, options.seed);
+        repair.verifyEvery = options.verifyEvery;
+        repair.run(options.repairJoins, options.repairLeaves).print(System.out);
+    }
 
-        // stars the chord protocol
-        chordProtocolSimulator.start();
+    /**
+     * This method builds the chord protocol, fails fractions of the nodes and prints the lookup success rate and hop
+     * inflation for every successor list length.
+     *
+     * @param chordProtocolSimulator the chord protocol simulator with the network
+     * @param options the failure fractions and successor list lengths
+     */
+    public void runFailureSimulation(ChordProtocolSimulator chordProtocolSimulator, SimulatorOptions options){
+        chordProtocolSimulator.buildProtocol();
+        ChordProtocol chordProtocol = (ChordProtocol) chordProtocolSimulator.protocol;
+
+        int[] keys = chordProtocolSimulator.keyIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+        if(keys.length == 0){
+            System.out.println("No keys to look up.");
+            return;
+        }
+        int lookups = options.lookups > 0 ? options.lookups : keys.length;
+        FailureSimulation failures = new FailureSimulation(chordProtocol, options.seed);
+        FailureSimulation.print(failures.run(keys, lookups, options.successorListLengths, options.failureFractions),
+                System.out);
+    }
+
+    /**
+     * This method builds the chord protocol and streams the lookups of a workload through it. It prints the hop counts
+     * and the forwarding load of the nodes instead of writing the route file. With a location cache the workload is
+     * run twice, without and with the cache, and the report of the second run shows the hop reduction.
+     *
+     * @param chordProtocolSimulator the chord protocol simulator with the network
+     * @param options the key popularity, origins, number of lookups and seed of the workload
+     */
+    public void runWorkloadSimulation(ChordProtocolSimulator chordProtocolSimulator, SimulatorOptions options){
+        chordProtocolSimulator.buildProtocol();
+        ChordProtocol chordProtocol = (ChordProtocol) chordProtocolSimulator.protocol;
+
+        int[] keys = chordProtocolSimulator.keyIndexes.values().stream().mapToInt(Integer::intValue).toArray();
+        if(keys.length == 0){
+            System.out.println("No keys to look up.");
+            return;
+        }
+        int lookups = options.lookups > 0 ? options.lookups : keys.length;
+        WorkloadSimulation simulation = new WorkloadSimulation(chordProtocol);
+        Workload workload = Workload.parse(options.workload, options.origins, keys, chordProtocol.ring, options.seed);
+        WorkloadSimulation.Report report = simulation.run(workload, lookups);
+        if(options.cacheCapacity > 0){
+            // the same workload again, with the cache
+            chordProtocol.cache = new LocationCache(options.cacheCapacity, options.cachePolicy,
+                    chordProtocol.ring.ordinalLimit());
+            WorkloadSimulation.Report baseline = report;
+            report = simulation.run(Workload.parse(options.workload, options.origins, keys, chordProtocol.ring,
+                    options.seed), lookups);
+            report.setBaseline(baseline);
+        }
+        report.print(System.out, 10);
+    }
+
+    /**
+     * returns the number of keys that are used to test the network
+     * @param nodeCount number of nodes in the network
+     * @param m the length of the indexes generated using consistent hashing
+     * @return number of keys
+     */
+    public static int keyCount(int nodeCount, int m){
+        if((nodeCount/2)<m)
+        {
+            return nodeCount/2;
+        }
+        return nodeCount*3;
     }
 
     /**
@@ -87,28 +243,31 @@ public class Simulator{
      * @param args - args used by the protocols
      */
     public static void main(String[] args){
+        // only a bad command line is a usage error, failures of the simulation propagate with their stack trace
+        SimulatorOptions options;
         try {
-            if (args.length < 2) {
-                System.out.println("Insufficient arguments provided.");
-                System.out.println("Usage: java Simulator <nodeCount> <m>");
-                return;
-            }
-            if (Integer.parseInt(args[0]) <= 0 || Integer.parseInt(args[1]) <= 0) {
-                System.out.println("Arguments must be positive integers.");
-                return;
-            }
-            // number of nodes in the network
-            int nodeCount = Integer.parseInt(args[0]);
-            
-            // length of the indexes generated using consistent hashing
-            int m = Integer.parseInt(args[1]);
-            
-            Simulator simulator = new Simulator();
-            simulator.start(nodeCount, m);
-            
+            options = SimulatorOptions.parse(args);
         } catch (NumberFormatException e) {
             System.out.println("Invalid argument format. Please provide positive integers for nodeCount and m.");
+            return;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(SimulatorOptions.USAGE);
+            return;
+        }
+
+        if (options.run() == SimulatorOptions.Run.HASH_REPORT) {
+            HashFunctionReport.run(options.nodeCount, options.m, keyCount(options.nodeCount, options.m),
+                    System.out);
+            return;
+        }
+        if (options.run() == SimulatorOptions.Run.SWEEP) {
+            new ScalabilitySweep(options).runAndWrite(System.out);
+            return;
         }
+
+        Simulator simulator = new Simulator();
+        simulator.start(options);
     }
 
 }
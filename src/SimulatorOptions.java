@@ -0,0 +1,658 @@
+import crypto.HashFunction;
+import crypto.HashFunctions;
+import protocol.FingerBuildMode;
+import protocol.LocationCache;
+import simulation.LatencyModel;
+import simulation.Workload;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class holds the command line options of the simulator. The first two arguments are always the node count and
+ * the 'm' value. The other options are given as --name or --name=value after them.
+ *
+ * The options select one run (see Run and run()). Options that only one run uses, eg:- --counters for the route file,
+ * are rejected with the other runs instead of being ignored.
+ *
+ * Options:
+ *     --hash=md5|murmur3|xxhash64   hash function used for consistent hashing (default md5)
+ *     --hash-report                 compares throughput and ring placement of all hash functions instead of simulating
+ *     --assign=bulk|sequential      key assignment: one sort-merge pass (default) or a binary search per key
+ *     --fingers=treemap|sweep|parallel  finger table build: TreeMap per finger, two pointer sweep (default) or the
+ *                                   sweep on a ForkJoinPool. The build time is printed
+ *     --threads=N                   number of threads for the lookups and the parallel finger build (default 1). The
+ *                                   output file is the same for any thread count
+ *     --des                         runs the lookups as a discrete event simulation (see simulation.LookupSimulation)
+ *                                   and prints latency percentiles and queue depths instead of writing the route file
+ *     --latency=MODEL               latency model of the event simulation: constant:MS, uniform:MIN:MAX or
+ *                                   coords:BASE:SPREAD (default constant:50)
+ *     --service-time=MS             time a node needs to process one message (default 0.1)
+ *     --arrival-rate=R              lookups issued per second of simulated time (default 1000)
+ *     --lookups=N                   number of lookups (default one per key)
+ *     --seed=N                      seed of everything that is random (default 1)
+ *     --churn=JOINS:LEAVES          joins and gracefully removes nodes with the dynamic membership operations of the
+ *                                   chord protocol, then reports how many stabilization rounds the ring needs
+ *     --max-rounds=N                largest number of stabilization rounds of the churn trace (default 10*m)
+ *     --stabilize-every=N           membership events between two stabilization rounds during the trace (default 1,
+ *                                   0 applies the whole trace before stabilizing)
+ *     --repair=JOINS:LEAVES         adds and removes nodes on the built ring, repairing only the affected fingers,
+ *                                   and reports the cost of each repair
+ *     --verify-every=N              events between two comparisons of the repaired fingers with a full build
+ *                                   (default 0, only after the trace)
+ *     --successors=R[,R...]         length of the successor lists (default 1). The failure report runs every length,
+ *                                   the protocol is built with the first
+ *     --failures=F[,F...]           fails the given fractions of the nodes and reports lookup success rate and hop
+ *                                   inflation with the normal and the failure tolerant routing
+ *     --routing=normal|tolerant     lookups stop at failed nodes or skip them (default normal)
+ *     --workload=KEYS               streams --lookups lookups with the given key popularity (sequential, uniform,
+ *                                   zipf:S or hotspot:F:P) and reports the forwarding load of every node. With --des
+ *                                   the event simulation uses the workload
+ *     --origins=ORIGINS             where the workload lookups start: first, uniform, zipf:S or hotspot:F:P
+ *                                   (default uniform)
+ *     --cache=N                     gives every node a location cache with N entries. The workload is run without and
+ *                                   then with the cache to report hit rate and hop reduction
+ *     --cache-policy=lru|clock      eviction policy of the location cache (default lru)
+ *     --virtual-nodes=V             every node gets V tokens on the ring (default 1). Keys and fingers work on the
+ *                                   tokens, load and hops are reported per node. Not supported by --churn
+ *     --counters=csv|json           counts forwarded, terminated and cache hit lookups per node and the uses of every
+ *                                   finger level during the lookups, and writes them next to the route file
+ *     --writer-thread               writes the route file on a dedicated thread behind a bounded queue, the lookups
+ *                                   don't wait for the disk unless the queue is full
+ *     --routes=text|binary|both     writes the routes as the text route file (default), as the binary trace
+ *                                   output/nodes_<n>_m_<m>.trace (see LookupTrace) or as both
+ *     --verbosity=quiet|summary|verbose  what is printed (see Verbosity). Default verbose up to
+ *                                   Verbosity.VERBOSE_NODE_LIMIT nodes, summary above
+ *     --sample=K                    prints K random nodes (seeded with --seed) instead of the whole ring and network
+ *     --sweep-nodes=LIST            runs the scalability sweep over the node counts instead of the simulation. A LIST
+ *                                   is comma separated values and ranges FROM..TO (step 1), FROM..TO+S (step S) or
+ *                                   FROM..TO*F (each value F times the one before), eg:- 100..1000000*10
+ *     --sweep-m=LIST                m values of the sweep (default the m argument)
+ *     --sweep-keys=LIST             key counts of the sweep (default the key count the simulator uses for N and m)
+ *     --warmup=N                    unmeasured runs of every sweep configuration (default 1)
+ *     --iterations=N                measured runs of every sweep configuration (default 3)
+ *     --sweep-report=csv|json       format of the sweep report output/sweep.csv or output/sweep.json (default csv)
+ */
+public class SimulatorOptions {
+
+    public static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java Simulator <nodeCount> <m> [options]",
+            "  --hash=md5|murmur3|xxhash64        hash function (default md5)",
+            "  --hash-report                      compare the hash functions",
+            "  --assign=bulk|sequential           key assignment (default bulk)",
+            "  --fingers=treemap|sweep|parallel   finger table build (default sweep)",
+            "  --threads=N                        lookup threads (default 1)",
+            "  --des                              discrete event simulation of the lookups",
+            "  --latency=MODEL                    constant:MS, uniform:MIN:MAX or coords:BASE:SPREAD"
+                    + " (default constant:50)",
+            "  --service-time=MS                  time a node needs per message (default 0.1)",
+            "  --arrival-rate=R                   lookups issued per simulated second (default 1000)",
+            "  --lookups=N                        number of lookups (default: the key count)",
+            "  --seed=N                           seed of the random parts (default 1)",
+            "  --churn=JOINS:LEAVES               join/leave trace with stabilization instead of lookups",
+            "  --max-rounds=N                     stabilization rounds of the churn trace (default 10*m)",
+            "  --stabilize-every=N                membership events between stabilization rounds (default 1)",
+            "  --repair=JOINS:LEAVES              join/leave trace with incremental finger repair instead of lookups",
+            "  --verify-every=N                   events between checks against a full finger build"
+                    + " (default 0: at the end)",
+            "  --successors=R[,R...]              successor list lengths (default 1)",
+            "  --failures=F[,F...]                failure fractions for the lookup success/hop inflation report",
+            "  --routing=normal|tolerant          lookups stop at failed nodes or skip them (default normal)",
+            "  --workload=KEYS                    sequential, uniform, zipf:S or hotspot:F:P key popularity,"
+                    + " reports node load",
+            "  --origins=ORIGINS                  first, uniform, zipf:S or hotspot:F:P lookup origins"
+                    + " (default uniform)",
+            "  --cache=N                          location cache entries per node for the workload run",
+            "  --cache-policy=lru|clock           eviction policy of the location cache (default lru)",
+            "  --virtual-nodes=V                  ring tokens per node (default 1)",
+            "  --counters=csv|json                write per node and per finger level lookup counters",
+            "  --writer-thread                    write the route file on a dedicated thread",
+            "  --routes=text|binary|both          route file, binary lookup trace or both (default text)",
+            "  --verbosity=quiet|summary|verbose  console output (default verbose up to " + Verbosity.VERBOSE_NODE_LIMIT
+                    + " nodes, summary above)",
+            "  --sample=K                         print K random nodes instead of the whole ring and network",
+            "  --sweep-nodes=LIST                 scalability sweep over node counts, eg:- 100,1000 or 100..1000000*10",
+            "  --sweep-m=LIST                     m values of the sweep, eg:- 10..30+5 (default m)",
+            "  --sweep-keys=LIST                  key counts of the sweep (default: the simulator's key count)",
+            "  --warmup=N                         unmeasured runs per sweep configuration (default 1)",
+            "  --iterations=N                     measured runs per sweep configuration (default 3)",
+            "  --sweep-report=csv|json            format of the sweep report (default csv)",
+            "The hash report, sweep, --des, --churn, --repair, --failures and --workload replace the route file",
+            "(in this order of precedence). An option of another run, eg:- --counters or --sample without the route",
+            "file, is an error.");
+
+    /**
+     * The runs of the simulator, in the order of precedence: the first one whose options are given is run (see run()).
+     */
+    public enum Run {
+        HASH_REPORT("hash report"),
+        SWEEP("sweep"),
+        DES("event simulation"),
+        CHURN("churn trace"),
+        REPAIR("repair trace"),
+        FAILURES("failure report"),
+        WORKLOAD("workload"),
+        ROUTES("route file");
+
+        final String label;
+
+        Run(String label){
+            this.label = label;
+        }
+    }
+
+    // number of nodes in the network
+    public int nodeCount;
+
+    // length of the indexes generated using consistent hashing
+    public int m;
+
+    // hash function used for consistent hashing
+    public HashFunction hashFunction = HashFunctions.MD5;
+
+    // if true the hash functions are compared instead of running the simulation
+    public boolean hashReport;
+
+    // if true keys are assigned with one sort-merge pass, otherwise one binary search per key
+    public boolean bulkAssign = true;
+
+    // how the finger tables are built
+    public FingerBuildMode fingerBuildMode = FingerBuildMode.SWEEP;
+
+    // number of threads used for the lookups (and the parallel finger table build)
+    public int threads = 1;
+
+    // if true the lookups are run as a discrete event simulation instead of writing the route file
+    public boolean eventSimulation;
+
+    // latency model of the event simulation (see LatencyModel.parse())
+    public String latencyModel = "constant:50";
+
+    // time a node needs to process one message in the event simulation, in milliseconds
+    public double serviceTime = 0.1;
+
+    // lookups issued per second of simulated time in the event simulation
+    public double arrivalRate = 1000;
+
+    // number of lookups, 0 means one lookup per key
+    public int lookups;
+
+    // seed used for everything that is random
+    public long seed = 1;
+
+    // number of nodes that join and leave in the churn simulation, -1 if no churn simulation is run
+    public int churnJoins = -1;
+    public int churnLeaves = -1;
+
+    // largest number of stabilization rounds in the churn simulation, 0 means 10*m
+    public int maxRounds;
+
+    // membership events between two stabilization rounds during the churn trace, 0 means none during the trace
+    public int stabilizeEvery = 1;
+
+    // number of nodes that are added and removed with incremental finger repair, -1 if no repair run is done
+    public int repairJoins = -1;
+    public int repairLeaves = -1;
+
+    // events between two comparisons of the repaired fingers with a full build, 0 means only after the trace
+    public int verifyEvery;
+
+    // successor list lengths, the protocol is built with the first one
+    public int[] successorListLengths = {1};
+
+    // fractions of failed nodes for the failure report, null if no failure report is run
+    public double[] failureFractions;
+
+    // true if lookups skip failed fingers and successors
+    public boolean failureTolerant;
+
+    // key popularity of the workload (see Workload), null if no workload is run
+    public String workload;
+
+    // distribution of the lookup origins of the workload
+    public String origins = "uniform";
+
+    // entries per node of the location cache, 0 means no cache
+    public int cacheCapacity;
+    public LocationCache.Policy cachePolicy = LocationCache.Policy.LRU;
+
+    // number of tokens each node has on the ring
+    public int virtualNodes = 1;
+
+    // format of the lookup counters ("csv" or "json"), null if the lookups are not counted
+    public String countersFormat;
+
+    // true if the route file is written on a dedicated thread
+    public boolean writerThread;
+
+    // how the routes are written ("text", "binary" or "both")
+    public String routeFormat = "text";
+
+    // how much is printed, null for the default of the node count
+    public Verbosity verbosity;
+
+    // number of randomly chosen nodes that are printed instead of the whole ring and network, 0 for none
+    public int sampleNodes;
+
+    // true if the scalability sweep is run instead of the simulation
+    public boolean sweep;
+
+    // node counts, m values and key counts of the sweep. key counts are null if the simulator's key count is used
+    public int[] sweepNodes;
+    public int[] sweepM;
+    public int[] sweepKeys;
+
+    // unmeasured and measured runs of every sweep configuration
+    public int warmupIterations = 1;
+    public int measuredIterations = 3;
+
+    // format of the sweep report ("csv" or "json")
+    public String sweepReport = "csv";
+
+    // names of the options given on the command line
+    private final Set<String> given = new HashSet<>();
+
+    /**
+     * returns the default options for the given node count and m
+     * @param nodeCount number of nodes in the network
+     * @param m the length of the indexes generated using consistent hashing
+     * @return the options
+     */
+    public static SimulatorOptions of(int nodeCount, int m){
+        SimulatorOptions options = new SimulatorOptions();
+        options.nodeCount = nodeCount;
+        options.m = m;
+        return options;
+    }
+
+    /**
+     * Parses the command line arguments.
+     *
+     * @param args the command line arguments
+     * @return the options
+     * @throws IllegalArgumentException if an argument is missing or has a wrong value
+     * @throws NumberFormatException if the node count or m is not a number
+     */
+    public static SimulatorOptions parse(String[] args){
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Insufficient arguments provided.");
+        }
+        SimulatorOptions options = of(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        if (options.nodeCount <= 0 || options.m <= 0) {
+            throw new IllegalArgumentException("Arguments must be positive integers.");
+        }
+        // ids are ints, with m >= 32 they would be negative
+        if (options.m >= 32) {
+            throw new IllegalArgumentException("Argument m must be below 32.");
+        }
+        for(int i = 2; i < args.length; i++){
+            String arg = args[i];
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? null : arg.substring(eq + 1);
+            options.given.add(name);
+            switch(name){
+                case "--hash":
+                    options.hashFunction = HashFunctions.forName(required(name, value));
+                    break;
+                case "--hash-report":
+                    options.hashReport = true;
+                    break;
+                case "--fingers":
+                    options.fingerBuildMode = FingerBuildMode.valueOf(
+                            choice(name, value, "treemap", "sweep", "parallel").toUpperCase());
+                    break;
+                case "--threads":
+                    options.threads = positive(name, value);
+                    break;
+                case "--des":
+                    options.eventSimulation = true;
+                    break;
+                case "--latency":
+                    options.latencyModel = required(name, value);
+                    break;
+                case "--service-time":
+                    options.serviceTime = nonNegativeDouble(name, value);
+                    break;
+                case "--arrival-rate":
+                    options.arrivalRate = nonNegativeDouble(name, value);
+                    if(options.arrivalRate == 0){
+                        throw new IllegalArgumentException("Option " + name + " must be positive.");
+                    }
+                    break;
+                case "--lookups":
+                    options.lookups = positive(name, value);
+                    break;
+                case "--seed":
+                    try {
+                        options.seed = Long.parseLong(required(name, value));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Option " + name + " must be an integer.");
+                    }
+                    break;
+                case "--churn":
+                    int[] churn = counts(name, value);
+                    options.churnJoins = churn[0];
+                    options.churnLeaves = churn[1];
+                    break;
+                case "--repair":
+                    int[] repair = counts(name, value);
+                    options.repairJoins = repair[0];
+                    options.repairLeaves = repair[1];
+                    break;
+                case "--verify-every":
+                    options.verifyEvery = positive(name, value);
+                    break;
+                case "--successors":
+                    String[] lengths = required(name, value).split(",");
+                    options.successorListLengths = new int[lengths.length];
+                    for(int j = 0; j < lengths.length; j++){
+                        options.successorListLengths[j] = positive(name, lengths[j]);
+                    }
+                    break;
+                case "--failures":
+                    String[] fractions = required(name, value).split(",");
+                    options.failureFractions = new double[fractions.length];
+                    for(int j = 0; j < fractions.length; j++){
+                        options.failureFractions[j] = nonNegativeDouble(name, fractions[j]);
+                        if(options.failureFractions[j] > 1){
+                            throw new IllegalArgumentException("Option " + name + " must be fractions from 0 to 1.");
+                        }
+                    }
+                    break;
+                case "--workload":
+                    options.workload = required(name, value);
+                    break;
+                case "--origins":
+                    options.origins = required(name, value);
+                    break;
+                case "--cache":
+                    options.cacheCapacity = positive(name, value);
+                    break;
+                case "--cache-policy":
+                    options.cachePolicy = LocationCache.Policy.valueOf(
+                            choice(name, value, "lru", "clock").toUpperCase());
+                    break;
+                case "--counters":
+                    options.countersFormat = choice(name, value, "csv", "json");
+                    break;
+                case "--writer-thread":
+                    options.writerThread = true;
+                    break;
+                case "--routes":
+                    options.routeFormat = choice(name, value, "text", "binary", "both");
+                    break;
+                case "--verbosity":
+                    options.verbosity = Verbosity.valueOf(
+                            choice(name, value, "quiet", "summary", "verbose").toUpperCase());
+                    break;
+                case "--sample":
+                    options.sampleNodes = positive(name, value);
+                    break;
+                case "--sweep-nodes":
+                    options.sweepNodes = values(name, value);
+                    options.sweep = true;
+                    break;
+                case "--sweep-m":
+                    options.sweepM = values(name, value);
+                    options.sweep = true;
+                    break;
+                case "--sweep-keys":
+                    options.sweepKeys = values(name, value);
+                    options.sweep = true;
+                    break;
+                case "--warmup":
+                    options.warmupIterations = nonNegative(name, value);
+                    break;
+                case "--iterations":
+                    options.measuredIterations = positive(name, value);
+                    break;
+                case "--sweep-report":
+                    options.sweepReport = choice(name, value, "csv", "json");
+                    break;
+                case "--virtual-nodes":
+                    options.virtualNodes = positive(name, value);
+                    break;
+                case "--routing":
+                    options.failureTolerant = choice(name, value, "normal", "tolerant").equals("tolerant");
+                    break;
+                case "--stabilize-every":
+                    options.stabilizeEvery = nonNegative(name, value);
+                    break;
+                case "--max-rounds":
+                    options.maxRounds = positive(name, value);
+                    break;
+                case "--assign":
+                    options.bulkAssign = choice(name, value, "bulk", "sequential").equals("bulk");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        // the specs are parsed when the simulation runs, they are checked here to report them as usage errors
+        LatencyModel.parse(options.latencyModel, 1, options.seed);
+        if(options.workload != null){
+            Workload.check(options.workload, options.origins);
+        }
+        if(options.churnJoins >= 0 && options.virtualNodes > 1){
+            throw new IllegalArgumentException("Option --churn does not support --virtual-nodes.");
+        }
+        // an option of a run that is not run would be ignored
+        Run run = options.run();
+        for(String name : options.given){
+            Set<Run> runs = runsOf(name);
+            if(runs != null && !runs.contains(run)){
+                List<String> labels = new ArrayList<>();
+                for(Run r : runs){
+                    labels.add(r.label);
+                }
+                String last = labels.remove(labels.size() - 1);
+                String used = labels.isEmpty() ? last : String.join(", ", labels) + " and " + last;
+                throw new IllegalArgumentException("Option " + name + " is only used by the " + used + ", not by the "
+                        + run.label + ".");
+            }
+        }
+        if(options.given.contains("--origins") && options.workload == null){
+            throw new IllegalArgumentException("Option --origins needs --workload.");
+        }
+        if(options.sweep){
+            if(options.sweepNodes == null){
+                options.sweepNodes = new int[]{options.nodeCount};
+            }
+            if(options.sweepM == null){
+                options.sweepM = new int[]{options.m};
+            }
+            for(int m : options.sweepM){
+                if(m >= 32){
+                    throw new IllegalArgumentException("Option --sweep-m must be below 32.");
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @return the run the options select, the first of the order of precedence of Run
+     */
+    public Run run(){
+        if(hashReport){
+            return Run.HASH_REPORT;
+        }
+        if(sweep){
+            return Run.SWEEP;
+        }
+        if(eventSimulation){
+            return Run.DES;
+        }
+        if(churnJoins >= 0){
+            return Run.CHURN;
+        }
+        if(repairJoins >= 0){
+            return Run.REPAIR;
+        }
+        if(failureFractions != null){
+            return Run.FAILURES;
+        }
+        return workload != null ? Run.WORKLOAD : Run.ROUTES;
+    }
+
+    // the runs that use the option, null if every run uses it (the node count, hash function, finger build, ...)
+    private static Set<Run> runsOf(String name){
+        switch(name){
+            case "--hash-report":
+                return EnumSet.of(Run.HASH_REPORT);
+            case "--sweep-nodes":
+            case "--sweep-m":
+            case "--sweep-keys":
+            case "--warmup":
+            case "--iterations":
+            case "--sweep-report":
+                return EnumSet.of(Run.SWEEP);
+            case "--des":
+            case "--latency":
+            case "--service-time":
+            case "--arrival-rate":
+                return EnumSet.of(Run.DES);
+            case "--churn":
+            case "--stabilize-every":
+            case "--max-rounds":
+                return EnumSet.of(Run.CHURN);
+            case "--repair":
+            case "--verify-every":
+                return EnumSet.of(Run.REPAIR);
+            case "--failures":
+                return EnumSet.of(Run.FAILURES);
+            case "--lookups":
+                return EnumSet.of(Run.DES, Run.FAILURES, Run.WORKLOAD);
+            case "--workload":
+            case "--origins":
+                return EnumSet.of(Run.DES, Run.WORKLOAD);
+            case "--cache":
+            case "--cache-policy":
+                return EnumSet.of(Run.WORKLOAD);
+            case "--counters":
+            case "--writer-thread":
+            case "--routes":
+            case "--sample":
+                return EnumSet.of(Run.ROUTES);
+            default:
+                return null;
+        }
+    }
+
+    // returns the value if it is one of the choices
+    private static String choice(String name, String value, String... choices){
+        required(name, value);
+        for(String c : choices){
+            if(c.equalsIgnoreCase(value)){
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Option " + name + " must be one of " + String.join(", ", choices) + ".");
+    }
+
+    // returns the value as a positive integer
+    private static int positive(String name, String value){
+        int result;
+        try {
+            result = Integer.parseInt(required(name, value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + name + " must be a positive integer.");
+        }
+        if(result <= 0){
+            throw new IllegalArgumentException("Option " + name + " must be a positive integer.");
+        }
+        return result;
+    }
+
+    // returns the value as an integer that is not negative
+    private static int nonNegative(String name, String value){
+        int result;
+        try {
+            result = Integer.parseInt(required(name, value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + name + " must not be negative.");
+        }
+        if(result < 0){
+            throw new IllegalArgumentException("Option " + name + " must not be negative.");
+        }
+        return result;
+    }
+
+    // returns the positive values of a list like 10,20 or 100..1000000*10 or 10..30+5, in the given order
+    private static int[] values(String name, String value){
+        List<Integer> values = new ArrayList<>();
+        for(String item : required(name, value).split(",")){
+            int range = item.indexOf("..");
+            if(range < 0){
+                values.add(positive(name, item));
+                continue;
+            }
+            String to = item.substring(range + 2);
+            char kind = '+';
+            int step = 1;
+            int stepAt = Math.max(to.indexOf('+'), to.indexOf('*'));
+            if(stepAt >= 0){
+                kind = to.charAt(stepAt);
+                step = positive(name, to.substring(stepAt + 1));
+                to = to.substring(0, stepAt);
+            }
+            int first = positive(name, item.substring(0, range));
+            int last = positive(name, to);
+            if(last < first || (kind == '*' && step == 1)){
+                throw new IllegalArgumentException("Option " + name + " has an empty or endless range: " + item);
+            }
+            for(long v = first; v <= last; v = (kind == '*') ? v * step : v + step){
+                values.add((int) v);
+            }
+        }
+        int[] result = new int[values.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    // returns the value JOINS:LEAVES as two counts that are not negative
+    private static int[] counts(String name, String value){
+        String[] parts = required(name, value).split(":");
+        int[] result = new int[2];
+        try {
+            if(parts.length != 2){
+                throw new NumberFormatException();
+            }
+            result[0] = Integer.parseInt(parts[0]);
+            result[1] = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + name + " must be JOINS:LEAVES.");
+        }
+        if(result[0] < 0 || result[1] < 0){
+            throw new IllegalArgumentException("Option " + name + " must be JOINS:LEAVES.");
+        }
+        return result;
+    }
+
+    // returns the value as a number that is not negative
+    private static double nonNegativeDouble(String name, String value){
+        double result;
+        try {
+            result = Double.parseDouble(required(name, value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Option " + name + " must be a number.");
+        }
+        if(!(result >= 0) || Double.isInfinite(result)){
+            throw new IllegalArgumentException("Option " + name + " must not be negative.");
+        }
+        return result;
+    }
+
+    private static String required(String name, String value){
+        if(value == null || value.isEmpty()){
+            throw new IllegalArgumentException("Option " + name + " needs a value.");
+        }
+        return value;
+    }
+}
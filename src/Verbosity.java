@@ -0,0 +1,24 @@
+/**
+ * How much the simulator prints to the console.
+ *
+ *     QUIET   - only failed lookups and errors
+ *     SUMMARY - build times, ring size, load balance, hop statistics and the names of the written files
+ *     VERBOSE - the summary, the whole ring and every node with its fingers and keys, and one line per lookup
+ *
+ * Without --verbosity runs with up to VERBOSE_NODE_LIMIT nodes are verbose and larger runs print the summary, because
+ * printing every node and lookup takes longer than the simulation itself.
+ */
+public enum Verbosity {
+    QUIET, SUMMARY, VERBOSE;
+
+    // largest node count that is verbose by default
+    public static final int VERBOSE_NODE_LIMIT = 1000;
+
+    /**
+     * @param nodeCount number of nodes in the network
+     * @return the verbosity used when none is given
+     */
+    public static Verbosity defaultFor(int nodeCount){
+        return nodeCount <= VERBOSE_NODE_LIMIT ? VERBOSE : SUMMARY;
+    }
+}
@@ -1,9 +1,6 @@
 package crypto;
 
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -14,27 +11,37 @@ import java.util.Set;
  *
  * A hash ring is constructed with the value from 0 to 2^m. Whenever a data item needs a hash value
  * the hash function assigns the data to one point in the hash ring (eg:- each data item would be assigned to the
- * value of 0 to 2^m. It uses sha,md5 hash functions to ensure that the assignment is random.
+ * value of 0 to 2^m. It uses md5 by default to ensure that the assignment is random. Faster non cryptographic
+ * hash functions (murmur3, xxhash64) can be selected through the HashFunction interface.
  */
 public class ConsistentHashing {
 
     // length of the identifier
     public int m;
 
+    // hash function that places the data on the ring
+    public HashFunction function;
+
     /**
      *
      * @param m the length of the hash value in bits
      */
     public ConsistentHashing(int m){
-        this.m=m;
+        this(m, HashFunctions.MD5);
     }
 
-    /*
-
-
-    @param data
-    @return returns
+    /**
+     *
+     * @param m the length of the hash value in bits
+     * @param function the hash function that is used to calculate the hash values
      */
+    public ConsistentHashing(int m, HashFunction function){
+        this.m=m;
+        this.function = function;
+    }
+
+    // each thread keeps its own scratch buffer that is used to encode characters
+    private static final ThreadLocal<HashState> STATE = ThreadLocal.withInitial(HashState::new);
 
     /**
      * Calculates hash value for the data
@@ -42,28 +49,83 @@ public class ConsistentHashing {
      * @return hash value (the integer value from 0 to 2^m that indicates the placement of data in the ring).
      */
     public int hash(String data){
+        return hash((CharSequence) data);
+    }
 
+    /**
+     * Calculates hash value for the characters. The characters are encoded as UTF-8 into a per thread buffer, so no
+     * String or byte array is allocated per call.
+     * @param data the characters that need a hash value
+     * @return hash value (the integer value from 0 to 2^m that indicates the placement of data in the ring).
+     */
+    public int hash(CharSequence data){
+        HashState state = STATE.get();
+        int length = state.encode(data);
+        return lowBits(function.hash64(state.input, 0, length), m);
+    }
 
-        MessageDigest md = null;
-        try {
-            md = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-        // digest() method is called to calculate message digest
-        // of an input digest() return array of byte
-        byte[] messageDigest = md.digest(data.getBytes());
-
-        // Convert byte array into signum representation
-        BigInteger res = new BigInteger(1, messageDigest);
-
-
-        // consistent hashing function - hash mod 2^m
-        BigInteger length = BigInteger.valueOf((long) Math.pow(2, m));
-        res = res.mod(length);
+    /**
+     * Calculates hash value for the bytes
+     * @param data the bytes that need a hash value
+     * @return hash value (the integer value from 0 to 2^m that indicates the placement of data in the ring).
+     */
+    public int hash(byte[] data){
+        return lowBits(function.hash64(data, 0, data.length), m);
+    }
 
-        return res.intValue();
+    /**
+     * consistent hashing function - hash mod 2^m. The ring length is a power of two, so the modulus is the low m bits
+     * of the hash. For md5 the result matches new BigInteger(1, digest).mod(2^m).intValue() for every m up to 62.
+     *
+     * @param hash the low 64 bits of the hash value
+     * @param m the length of the hash value in bits
+     * @return the low m bits of the hash
+     */
+    static int lowBits(long hash, int m){
+        if(m >= 32){
+            return (int) hash;
+        }
+        return (int) (hash & ((1L << m) - 1));
+    }
 
+    /**
+     * Per thread hashing state. a growable input buffer used to encode characters.
+     */
+    private static final class HashState {
+        byte[] input = new byte[64];
+
+        // encodes the characters as utf-8 into the input buffer and returns the number of bytes written
+        int encode(CharSequence data){
+            int length = data.length();
+            if(input.length < length * 3){
+                input = new byte[Math.max(length * 3, input.length * 2)];
+            }
+            byte[] buffer = input;
+            int pos = 0;
+            for(int i = 0; i < length; i++){
+                char c = data.charAt(i);
+                if(c < 0x80){
+                    buffer[pos++] = (byte) c;
+                } else if(c < 0x800){
+                    buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))){
+                    int cp = Character.toCodePoint(c, data.charAt(++i));
+                    buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+                } else if(Character.isSurrogate(c)){
+                    // unpaired surrogate, encoded as '?' like String.getBytes does
+                    buffer[pos++] = (byte) '?';
+                } else {
+                    buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                    buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return pos;
+        }
     }
 
 
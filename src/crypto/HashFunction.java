@@ -0,0 +1,23 @@
+package crypto;
+
+/**
+ * A hash function that is used by consistent hashing to place data on the ring. Implementations return 64 bits of the
+ * hash and consistent hashing keeps the low m bits of it. Implementations have to be thread safe.
+ */
+public interface HashFunction {
+
+    /**
+     * @return the name of the hash function, used to select it from the command line (eg:- md5)
+     */
+    String getName();
+
+    /**
+     * Calculates the hash of the bytes data[offset] ... data[offset+length-1].
+     *
+     * @param data the bytes that need a hash value
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return the low 64 bits of the hash value
+     */
+    long hash64(byte[] data, int offset, int length);
+}
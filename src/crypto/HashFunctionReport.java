@@ -0,0 +1,115 @@
+package crypto;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * This class compares the hash functions. For each hash function it measures the throughput of hashing key names and
+ * how uniformly the nodes and keys are placed on the ring. The node names ("Node i") and key names ("key i") are the
+ * same names the simulator uses, so the numbers show how the hash function would behave in a simulation run.
+ */
+public class HashFunctionReport {
+
+    // number of times the keys are hashed before the measured run, so the jit has compiled the hash function
+    private static final int WARMUP_ROUNDS = 3;
+
+    // minimum number of names hashed for the throughput measurement, small key counts are too short to time
+    private static final int THROUGHPUT_SAMPLE = 1 << 20;
+
+    /**
+     * Runs the report for all the available hash functions and prints one line per hash function.
+     *
+     * @param nodeCount number of nodes placed on the ring
+     * @param m the length of the hash value in bits
+     * @param keyCount number of keys that are hashed and assigned to the nodes
+     * @param out stream the report is printed to
+     */
+    public static void run(int nodeCount, int m, int keyCount, PrintStream out){
+        out.println("hash report: nodes " + nodeCount + ", m " + m + ", keys " + keyCount);
+        out.printf("%-10s %14s %10s %14s %12s %14s%n",
+                "hash", "Mhashes/s", "collisions", "max/mean arc", "arc cv", "max/mean keys");
+        for(HashFunction function : HashFunctions.all()){
+            report(function, nodeCount, m, keyCount, out);
+        }
+    }
+
+    private static void report(HashFunction function, int nodeCount, int m, int keyCount, PrintStream out){
+        ConsistentHashing ch = new ConsistentHashing(m, function);
+        StringBuilder name = new StringBuilder(32);
+
+        // throughput, the key names are built in a reused builder so only hashing is measured
+        int sample = Math.max(keyCount, THROUGHPUT_SAMPLE);
+        long sink = 0;
+        for(int round = 0; round < WARMUP_ROUNDS; round++){
+            sink += hashKeys(ch, name, sample);
+        }
+        long start = System.nanoTime();
+        sink += hashKeys(ch, name, sample);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        double throughput = sample * 1000.0 / elapsed;
+
+        // node placement
+        int[] ids = new int[nodeCount];
+        for(int i = 0; i < nodeCount; i++){
+            name.setLength(0);
+            ids[i] = ch.hash(name.append("Node ").append(i + 1));
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for(int i = 0; i < nodeCount; i++){
+            if(i == 0 || ids[i] != ids[i - 1]){
+                ids[distinct++] = ids[i];
+            }
+        }
+        int collisions = nodeCount - distinct;
+
+        // arc owned by each node, the space between the predecessor and the node
+        long ringLength = 1L << m;
+        double meanArc = (double) ringLength / distinct;
+        double maxArc = 0;
+        double sumSquares = 0;
+        for(int i = 0; i < distinct; i++){
+            long previous = (i == 0) ? ids[distinct - 1] - ringLength : ids[i - 1];
+            long arc = distinct == 1 ? ringLength : ids[i] - previous;
+            maxArc = Math.max(maxArc, arc);
+            sumSquares += (arc - meanArc) * (arc - meanArc);
+        }
+        double arcCv = Math.sqrt(sumSquares / distinct) / meanArc;
+
+        // keys per node, each key goes to the first node at or after its index
+        int[] load = new int[distinct];
+        for(int i = 1; i <= keyCount; i++){
+            name.setLength(0);
+            int keyIndex = ch.hash(name.append("key ").append(i));
+            int position = Arrays.binarySearch(ids, 0, distinct, keyIndex);
+            if(position < 0){
+                position = -position - 1;
+                if(position == distinct){
+                    position = 0;
+                }
+            }
+            load[position]++;
+        }
+        int maxLoad = 0;
+        for(int l : load){
+            maxLoad = Math.max(maxLoad, l);
+        }
+        double meanLoad = (double) keyCount / distinct;
+
+        out.printf("%-10s %14.2f %10d %14.2f %12.3f %14.2f%n", function.getName(), throughput, collisions,
+                maxArc / meanArc, arcCv, keyCount == 0 ? 0.0 : maxLoad / meanLoad);
+        if(sink == 42){
+            // keeps the measured loop from being removed as dead code
+            out.print("");
+        }
+    }
+
+    private static long hashKeys(ConsistentHashing ch, StringBuilder name, int keyCount){
+        long sum = 0;
+        for(int i = 1; i <= keyCount; i++){
+            name.setLength(0);
+            sum += ch.hash(name.append("key ").append(i));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,38 @@
+package crypto;
+
+/**
+ * The hash functions that can be used for consistent hashing. md5 is the default.
+ */
+public final class HashFunctions {
+
+    public static final HashFunction MD5 = new Md5HashFunction();
+    public static final HashFunction MURMUR3 = new Murmur3HashFunction();
+    public static final HashFunction XXHASH64 = new XxHash64HashFunction();
+
+    private static final HashFunction[] ALL = {MD5, MURMUR3, XXHASH64};
+
+    private HashFunctions(){
+    }
+
+    /**
+     * @return all the available hash functions, the default one first
+     */
+    public static HashFunction[] all(){
+        return ALL.clone();
+    }
+
+    /**
+     * returns the hash function with the given name (eg:- md5, murmur3, xxhash64)
+     * @param name name of the hash function, case insensitive
+     * @return the hash function
+     * @throws IllegalArgumentException if there is no hash function with that name
+     */
+    public static HashFunction forName(String name){
+        for(HashFunction function : ALL){
+            if(function.getName().equalsIgnoreCase(name)){
+                return function;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash function: " + name + " (expected md5, murmur3 or xxhash64)");
+    }
+}
@@ -0,0 +1,48 @@
+package crypto;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * MD5 hash function. This is the default hash function. The digest is read as an unsigned big endian number and the
+ * last 8 bytes are returned, so the low m bits are the same as new BigInteger(1, digest).mod(2^m).
+ */
+public class Md5HashFunction implements HashFunction {
+
+    // each thread keeps its own digest and output buffer, MessageDigest is not thread safe
+    private static final ThreadLocal<DigestState> STATE = ThreadLocal.withInitial(DigestState::new);
+
+    public String getName(){
+        return "md5";
+    }
+
+    public long hash64(byte[] data, int offset, int length){
+        DigestState state = STATE.get();
+        byte[] output = state.output;
+        state.digest.update(data, offset, length);
+        try {
+            state.digest.digest(output, 0, output.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        long low = 0;
+        for(int i = output.length - 8; i < output.length; i++){
+            low = (low << 8) | (output[i] & 0xFF);
+        }
+        return low;
+    }
+
+    private static final class DigestState {
+        final MessageDigest digest;
+        final byte[] output = new byte[16];
+
+        DigestState(){
+            try {
+                this.digest = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5 is not available", e);
+            }
+        }
+    }
+}
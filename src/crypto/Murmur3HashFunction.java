@@ -0,0 +1,101 @@
+package crypto;
+
+/**
+ * MurmurHash3 x64 128 bit variant (seed 0). It is not a cryptographic hash, but it is a lot faster than md5 and spreads
+ * the values evenly. The first 64 bits (h1) of the 128 bit result are returned.
+ */
+public class Murmur3HashFunction implements HashFunction {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    public String getName(){
+        return "murmur3";
+    }
+
+    public long hash64(byte[] data, int offset, int length){
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length >>> 4;
+
+        // body, 16 bytes at a time
+        for(int i = 0; i < blocks; i++){
+            int pos = offset + (i << 4);
+            long k1 = getLong(data, pos);
+            long k2 = getLong(data, pos + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        // tail, the remaining 0 to 15 bytes: bytes 8 to 14 go into k2 and bytes 0 to 7 into k1, little endian
+        int tail = offset + (blocks << 4);
+        long k1 = 0;
+        long k2 = 0;
+        int rest = length & 15;
+        for(int i = rest - 1; i >= 8; i--){
+            k2 ^= (long) (data[tail + i] & 0xFF) << ((i - 8) << 3);
+        }
+        if(rest > 8){
+            h2 ^= mixK2(k2);
+        }
+        for(int i = Math.min(rest, 8) - 1; i >= 0; i--){
+            k1 ^= (long) (data[tail + i] & 0xFF) << (i << 3);
+        }
+        if(rest > 0){
+            h1 ^= mixK1(k1);
+        }
+
+        // finalization
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    // reads 8 bytes as a little endian long
+    private static long getLong(byte[] data, int pos){
+        return (data[pos] & 0xFFL)
+                | (data[pos + 1] & 0xFFL) << 8
+                | (data[pos + 2] & 0xFFL) << 16
+                | (data[pos + 3] & 0xFFL) << 24
+                | (data[pos + 4] & 0xFFL) << 32
+                | (data[pos + 5] & 0xFFL) << 40
+                | (data[pos + 6] & 0xFFL) << 48
+                | (data[pos + 7] & 0xFFL) << 56;
+    }
+
+    private static long mixK1(long k1){
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2){
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k){
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
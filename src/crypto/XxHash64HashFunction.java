@@ -0,0 +1,102 @@
+package crypto;
+
+/**
+ * xxHash64 hash function (seed 0). It is not a cryptographic hash. It is the fastest of the available hash functions
+ * for long inputs.
+ */
+public class XxHash64HashFunction implements HashFunction {
+
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    public String getName(){
+        return "xxhash64";
+    }
+
+    public long hash64(byte[] data, int offset, int length){
+        int pos = offset;
+        int end = offset + length;
+        long h;
+
+        if(length >= 32){
+            long v1 = P1 + P2;
+            long v2 = P2;
+            long v3 = 0;
+            long v4 = -P1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, getLong(data, pos));
+                v2 = round(v2, getLong(data, pos + 8));
+                v3 = round(v3, getLong(data, pos + 16));
+                v4 = round(v4, getLong(data, pos + 24));
+                pos += 32;
+            } while(pos <= limit);
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = P5;
+        }
+
+        h += length;
+
+        while(pos + 8 <= end){
+            h ^= round(0, getLong(data, pos));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            pos += 8;
+        }
+        if(pos + 4 <= end){
+            h ^= (getInt(data, pos) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            pos += 4;
+        }
+        while(pos < end){
+            h ^= (data[pos] & 0xFFL) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            pos++;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input){
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long val){
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+
+    // reads 8 bytes as a little endian long
+    private static long getLong(byte[] data, int pos){
+        return (data[pos] & 0xFFL)
+                | (data[pos + 1] & 0xFFL) << 8
+                | (data[pos + 2] & 0xFFL) << 16
+                | (data[pos + 3] & 0xFFL) << 24
+                | (data[pos + 4] & 0xFFL) << 32
+                | (data[pos + 5] & 0xFFL) << 40
+                | (data[pos + 6] & 0xFFL) << 48
+                | (data[pos + 7] & 0xFFL) << 56;
+    }
+
+    // reads 4 bytes as a little endian int
+    private static int getInt(byte[] data, int pos){
+        return (data[pos] & 0xFF)
+                | (data[pos + 1] & 0xFF) << 8
+                | (data[pos + 2] & 0xFF) << 16
+                | (data[pos + 3] & 0xFF) << 24;
+    }
+}
@@ -2,8 +2,6 @@ package p2p;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 
 import protocol.NodeType;
 
@@ -29,14 +27,15 @@ public class Node implements NodeInterface{
     // for example finger table used by chord protocol can be populated in the routing table
     public Object routingTable;
 
-    // this data can store set of objects. For example, key indexes used in the chord protocol can be stored here
-    public LinkedHashSet<Object> data;
+    // this data stores the key indexes used in the chord protocol. The keys are kept in a sorted int array, so each
+    // key costs 4 bytes and contains() is a binary search
+    public SortedIntSet data;
 
 
     public Node(String name) {
         this.id = -1;
         this.name = name;
-        this.data = new LinkedHashSet<>();
+        this.data = new SortedIntSet();
         this.neighbors= new HashMap<NodeType, NodeInterface>();
     }
 
@@ -56,17 +55,50 @@ public class Node implements NodeInterface{
     }
 
 
+    /**
+     * @return a read only Set&lt;Integer&gt; view of the key indexes stored in the node
+     */
     public Object getData() {
-        return this.data;
+        return this.data.asSet();
     }
 
 
     public void addData(Object data) {
-        this.data.add(data);
+        this.data.add(keyIndex(data));
+    }
+
+    public void addDataRange(int[] keys, int from, int to) {
+        this.data.addAll(keys, from, to);
+    }
+
+    public boolean containsData(int keyIndex) {
+        return this.data.contains(keyIndex);
+    }
+
+    public int[] getDataRange(int low, int high) {
+        return this.data.range(low, high);
+    }
+
+    public int moveDataRange(int low, int high, NodeInterface target) {
+        if(target instanceof Node){
+            return this.data.transferRange(low, high, ((Node) target).data);
+        }
+        SortedIntSet moved = new SortedIntSet();
+        int count = this.data.transferRange(low, high, moved);
+        target.addDataRange(moved.toArray(), 0, count);
+        return count;
     }
 
     public void removeData(Object data){
-        this.data.remove(data);
+        this.data.remove(keyIndex(data));
+    }
+
+    // key indexes are ints, any other data can't be stored in the node
+    private static int keyIndex(Object data){
+        if(!(data instanceof Number)){
+            throw new IllegalArgumentException("Node data must be an integer key index: " + data);
+        }
+        return ((Number) data).intValue();
     }
 
 
@@ -100,7 +132,7 @@ public class Node implements NodeInterface{
 
 
     public NodeInterface getSuccessor(){
-        return this.neighbors.entrySet().iterator().next().getValue();
+        return this.neighbors.get(NodeType.SUCCESSOR);
     }
 
 
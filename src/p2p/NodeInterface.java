@@ -46,6 +46,14 @@ public interface NodeInterface {
 
 
 
+    /**
+     * removes the neighbor of the given type from the node
+     * @param type type of the neighbor -> (SUCCESSOR, PREDECESSOR)
+     */
+    void removeNeighbor(NodeType type);
+
+
+
     /**
      * @return all the neighbors of the node
      */
@@ -74,8 +82,8 @@ public interface NodeInterface {
 
 
     /**
-     * It returns the successor of the node. The successor is the first neighbor that's added to it. Neighbors are
-     * ordered based on the order in which they have connected with this node.
+     * It returns the successor of the node. This is the neighbor of type SUCCESSOR (the node may also have a
+     * PREDECESSOR neighbor).
      *
      * @return nighbor node object
      */
@@ -96,6 +104,55 @@ public interface NodeInterface {
 
 
 
+    /**
+     * This method adds a batch of key indexes to the node. The keys keys[from] ... keys[to-1] are sorted in ascending
+     * order. It is used to hand a node its whole key range at once instead of one key at a time.
+     *
+     * @param keys sorted key indexes
+     * @param from index of the first key (inclusive)
+     * @param to index after the last key (exclusive)
+     */
+    void addDataRange(int[] keys, int from, int to);
+
+
+
+    /**
+     * This method checks whether the node stores the key index. Unlike searching the getData() object it does not box
+     * the key.
+     *
+     * @param keyIndex index of the key
+     * @return true if the node stores the key index
+     */
+    boolean containsData(int keyIndex);
+
+
+
+    /**
+     * This method returns the key indexes stored in the node that are in the ring interval (low, high]. If low is not
+     * smaller than high the interval wraps around the end of the ring.
+     *
+     * @param low start of the interval (exclusive)
+     * @param high end of the interval (inclusive)
+     * @return the key indexes in the interval
+     */
+    int[] getDataRange(int low, int high);
+
+
+
+    /**
+     * This method moves the key indexes in the ring interval (low, high] to the target node in one operation, instead
+     * of one removeData()/addData() per key. It is used when a node joins or leaves and a key range changes owner. If
+     * low is not smaller than high the interval wraps around the end of the ring, low == high moves every key.
+     *
+     * @param low start of the interval (exclusive)
+     * @param high end of the interval (inclusive)
+     * @param target the node that receives the keys
+     * @return number of keys moved
+     */
+    int moveDataRange(int low, int high, NodeInterface target);
+
+
+
     /**
      * This method returns data stored in the node. Nodes can store different data depending on the usage. Different
      * protocols might use nodes to store and retrieve different amount of node. (eg:- in chord protocol, node stores
@@ -0,0 +1,262 @@
+package p2p;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A set of int values kept in a sorted, growable int array. Nodes use it to store key indexes: each key costs 4 bytes
+ * instead of a boxed Integer in a hash set, contains() is a binary search and a range of keys on the ring can be
+ * extracted with two binary searches.
+ *
+ * Adding keys in ascending order (or a sorted batch that comes after the current keys) only appends to the array.
+ * This class is not thread safe.
+ */
+public class SortedIntSet {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[] values;
+    private int size;
+
+    public SortedIntSet(){
+        this.values = EMPTY;
+    }
+
+    /**
+     * @return number of values in the set
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @param position position in the sorted order, 0 ... size()-1
+     * @return the value at that position
+     */
+    public int get(int position){
+        if(position < 0 || position >= size){
+            throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+        }
+        return values[position];
+    }
+
+    /**
+     * @param value the value to look for
+     * @return true if the set contains the value
+     */
+    public boolean contains(int value){
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * adds the value to the set
+     * @param value the value
+     * @return true if the value was not in the set before
+     */
+    public boolean add(int value){
+        if(size == 0 || value > values[size - 1]){
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return true;
+        }
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if(position >= 0){
+            return false;
+        }
+        position = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * adds the sorted values values[from] ... values[to-1] to the set. If all of them are bigger than the current
+     * values they are appended in one copy, otherwise the two sorted sequences are merged. Duplicates are dropped.
+     *
+     * @param sorted values in ascending order
+     * @param from index of the first value (inclusive)
+     * @param to index after the last value (exclusive)
+     */
+    public void addAll(int[] sorted, int from, int to){
+        int count = to - from;
+        if(count <= 0){
+            return;
+        }
+        if(size == 0 || sorted[from] > values[size - 1]){
+            ensureCapacity(size + count);
+            int previous = size;
+            for(int i = from; i < to; i++){
+                int value = sorted[i];
+                if(size == previous || values[size - 1] != value){
+                    values[size++] = value;
+                }
+            }
+            return;
+        }
+        int[] merged = new int[size + count];
+        int i = 0;
+        int j = from;
+        int n = 0;
+        while(i < size || j < to){
+            int value;
+            if(j >= to || (i < size && values[i] <= sorted[j])){
+                value = values[i++];
+            } else {
+                value = sorted[j++];
+            }
+            if(n == 0 || merged[n - 1] != value){
+                merged[n++] = value;
+            }
+        }
+        values = merged;
+        size = n;
+    }
+
+    /**
+     * removes the value from the set
+     * @param value the value
+     * @return true if the value was in the set
+     */
+    public boolean remove(int value){
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if(position < 0){
+            return false;
+        }
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * returns the values in the ring interval (low, high]. If low is not smaller than high the interval wraps around
+     * the end of the ring, it then contains the values bigger than low and the values not bigger than high.
+     *
+     * @param low start of the interval (exclusive)
+     * @param high end of the interval (inclusive)
+     * @return the values in ascending ring order starting after low
+     */
+    public int[] range(int low, int high){
+        if(low < high){
+            int from = upperBound(low);
+            int to = upperBound(high);
+            return Arrays.copyOfRange(values, from, to);
+        }
+        // wrap-around: (low, end of ring] followed by [start of ring, high]
+        int from = upperBound(low);
+        int to = upperBound(high);
+        int[] result = new int[(size - from) + to];
+        System.arraycopy(values, from, result, 0, size - from);
+        System.arraycopy(values, 0, result, size - from, to);
+        return result;
+    }
+
+    /**
+     * moves the values in the ring interval (low, high] to the target set. Like range(), the interval wraps around if
+     * low is not smaller than high, so low == high moves every value. The moved values leave this set with one array
+     * copy and are added to the target as one or two sorted batches (see addAll()), no value is moved on its own.
+     *
+     * @param low start of the interval (exclusive)
+     * @param high end of the interval (inclusive)
+     * @param target the set the values are moved to
+     * @return number of values moved
+     */
+    public int transferRange(int low, int high, SortedIntSet target){
+        int from = upperBound(low);
+        int to = upperBound(high);
+        if(low < high){
+            int count = to - from;
+            if(count > 0){
+                target.addAll(values, from, to);
+                System.arraycopy(values, to, values, from, size - to);
+                size -= count;
+            }
+            return count;
+        }
+        // wrap-around: the values up to high and the values after low move, the ones in between stay
+        int count = to + (size - from);
+        if(count > 0){
+            target.addAll(values, 0, to);
+            target.addAll(values, from, size);
+            System.arraycopy(values, to, values, 0, from - to);
+            size = from - to;
+        }
+        return count;
+    }
+
+    /**
+     * @return the values in ascending order
+     */
+    public int[] toArray(){
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * returns a read only view of the set. The view reflects later changes.
+     * @return the values as a set of Integers
+     */
+    public Set<Integer> asSet(){
+        return new AbstractSet<Integer>() {
+            public Iterator<Integer> iterator(){
+                return new Iterator<Integer>() {
+                    private int position;
+
+                    public boolean hasNext(){
+                        return position < size;
+                    }
+
+                    public Integer next(){
+                        if(position >= size){
+                            throw new NoSuchElementException();
+                        }
+                        return values[position++];
+                    }
+                };
+            }
+
+            public int size(){
+                return size;
+            }
+
+            public boolean contains(Object o){
+                return (o instanceof Integer) && SortedIntSet.this.contains((Integer) o);
+            }
+        };
+    }
+
+    public String toString(){
+        StringBuilder result = new StringBuilder(size * 8 + 2).append('[');
+        for(int i = 0; i < size; i++){
+            if(i > 0){
+                result.append(", ");
+            }
+            result.append(values[i]);
+        }
+        return result.append(']').toString();
+    }
+
+    // first position with a value bigger than the given value
+    private int upperBound(int value){
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(values[mid] <= value){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity){
+        if(values.length < capacity){
+            values = Arrays.copyOf(values, Math.max(capacity, Math.max(8, values.length + (values.length >> 1))));
+        }
+    }
+}
@@ -2,14 +2,14 @@ package protocol;
 
 
 import crypto.ConsistentHashing;
+import crypto.HashFunction;
 import p2p.NetworkInterface;
 import p2p.Node;
 import p2p.NodeInterface;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import protocol.interval.Interval;
-import protocol.interval.OpenClosedInterval;
-import protocol.interval.OpenOpenInterval;
 
 
 /**
@@ -29,7 +29,42 @@ public class ChordProtocol implements Protocol{
     // key indexes. tuples of (<key name>, <key index>)
     public HashMap<String, Integer> keyIndexes;
 
-    public TreeMap<Integer, NodeInterface> ring; // overlay network
+    public ChordRing ring; // overlay network
+
+    // how the finger tables are built, all modes build the same tables
+    public FingerBuildMode fingerBuildMode = FingerBuildMode.SWEEP;
+
+    // pool used by the parallel finger table build
+    public ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // time the last buildFingerTable() took, in nanoseconds
+    public long fingerBuildNanos;
+
+    // true once the nodes keep their own successor, predecessor and fingers (see enableDynamicMembership())
+    public boolean dynamicMembership;
+
+    // number of messages sent between nodes by join, leave, stabilize, notify and fix_fingers
+    public long messages;
+
+    // key indexes moved between nodes because a node joined or left, and their size in bytes
+    public long keysMoved;
+    public long keyBytesMoved;
+
+    // length of the successor list of every node
+    public int successorListLength = 1;
+
+    // if true lookups skip failed fingers and successors (see lookUp(int, LookupResult))
+    public boolean failureTolerant;
+
+    // per node cache of key ranges and their owners, null if lookups don't use a cache. not thread safe, so it must
+    // not be set while lookups run on several threads
+    public LocationCache cache;
+
+    // number of tokens (virtual nodes) each node has on the ring, see NodeIndex
+    public int virtualNodes = 1;
+
+    // per node and per finger level counters of the lookups, null if the lookups are not counted (see LookupCounters)
+    public LookupCounters counters;
 
 
     public ChordProtocol(int m){
@@ -47,6 +82,14 @@ public class ChordProtocol implements Protocol{
         this.ch = new ConsistentHashing(this.m);
     }
 
+    /**
+     * sets the hash function that is used to calculate the node indexes
+     * @param function the hash function (eg:- md5, murmur3)
+     */
+    public void setHashFunction(HashFunction function){
+        this.ch = new ConsistentHashing(this.m, function);
+    }
+
   
 
     /**
@@ -88,28 +131,37 @@ public class ChordProtocol implements Protocol{
      *           1) for each node:
      *           2)     find neighbor based on consistent hash (neighbor should be next to the current node in the ring)
      *           3)     add neighbor to the peer (uses Peer.addNeighbor() method)
+     *
+     *     The ring itself is a ChordRing: the node indexes sorted in an int array, the position in that array is the
+     *     ordinal of the node and the successor of each ordinal is the next one (with wraparound). Nodes added later
+     *     with addNode() get a free ordinal (see ChordRing).
+     *
+     *     With virtualNodes > 1 every node has that many tokens on the ring, and the ring, the fingers and the keys
+     *     work on tokens. A node takes the index of its primary token, and its successor in the network is the node
+     *     of the next primary token, so the network still forms one ring of nodes.
      */
     public void buildOverlayNetwork(){
-        LinkedHashMap<String, NodeInterface> topology = this.network.getTopology();
-        this.ring = new TreeMap<>(); 
-        // a treemap sorts itself based on keys (indexs here), documentation: "The map is sorted according to the natural ordering of its keys"
-        for(Map.Entry<String, NodeInterface> nodeEntry : topology.entrySet()){
-            NodeInterface node = nodeEntry.getValue();
-            int index = this.ch.hash(nodeEntry.getKey());
-            node.setId(index);
-            ring.put(index, node);
+        // hashes every token once and sorts the indexes
+        buildOverlayNetwork(NodeIndex.build(this.network, this.ch, this.virtualNodes));
+    }
+
+
+
+    /**
+     * This method builds the overlay network from a node index that has already been built for the network, with the
+     * same hash function and number of virtual nodes. Nothing is hashed again (see buildOverlayNetwork()).
+     *
+     * @param index the node index of the network
+     */
+    public void buildOverlayNetwork(NodeIndex index){
+        this.ring = new ChordRing(index, this.m);
+        this.ring.buildSuccessorLists(this.successorListLength);
+        for(int p = 0; p < ring.physicalLimit(); p++){
+            int ordinal = ring.primaryOrdinal(p);
+            NodeInterface node = ring.physicalNode(p);
+            node.setId(ring.idAt(ordinal));
+            node.addNeighbor(NodeType.SUCCESSOR, ring.nodeAt(ring.nextPrimary(ordinal)));
         }
-        // ^^first make ring, put nodes on correct indexes in sorted way^^
-        Integer[] nodeIndexes = ring.keySet().toArray(new Integer[0]);
-        for(int i = 0; i < nodeIndexes.length; i++){
-            int hash = nodeIndexes[i];
-            NodeInterface node = ring.get(hash);
-            int nextIndex = (i + 1) % nodeIndexes.length; // wraparound edgecase
-            int nextHash = nodeIndexes[nextIndex];
-            NodeInterface successor = ring.get(nextHash);
-            node.addNeighbor(NodeType.SUCCESSOR, successor);
-        }   
-        // ^^connect neighbors, handeling wraparound edgecase^^
     }
 
 
@@ -127,28 +179,18 @@ public class ChordProtocol implements Protocol{
      *     1) start value - (n+2^i-1) mod 2^m. i = 1,...,m
      *     2) interval - [finger[i].start, finger[i+1].start)
      *     3) node - first node in the ring that is responsible for indexes in the interval
+     *
+     * The fingers are stored as ordinals in the finger matrix of the ring. Each node gets a FingerTable view of its
+     * row. The matrix is filled according to fingerBuildMode (see FingerBuildMode) and the time it took is kept in
+     * fingerBuildNanos.
      */
     public void buildFingerTable() {
-        int ringLength = (int)Math.pow(2, this.m);
-
-        for(Map.Entry<Integer, NodeInterface> entry : this.ring.entrySet()){
-            int hash = entry.getKey();
-            NodeInterface currentNode = entry.getValue();
-            NodeInterface[] ftable = new NodeInterface[this.m]; //finger table with m entries
-            
-            // Calculate each finger i=1 to m
-            for(int i = 1; i <= this.m; i++){
-                int power = (int) Math.pow(2, i-1);
-                int start = (hash + power) % ringLength;
-                
-                Map.Entry<Integer, NodeInterface> successor = this.ring.ceilingEntry(start); // .ceilingEntry(start) finds next node given 'start' index, null otherwise
-                if(successor == null){ // wraparound case, return first key found
-                    successor = this.ring.firstEntry();
-                }
-                NodeInterface sNode =  successor.getValue();
-                ftable[i-1] = sNode;
-            }
-            currentNode.setRoutingTable(ftable);
+        long start = System.nanoTime();
+        FingerTableBuilder.build(this.ring, this.fingerBuildMode, this.pool);
+        this.fingerBuildNanos = System.nanoTime() - start;
+
+        for(int p = 0; p < this.ring.physicalLimit(); p++){
+            this.ring.physicalNode(p).setRoutingTable(new FingerTable(this.ring, this.ring.primaryOrdinal(p)));
         }
     }
 
@@ -160,87 +202,635 @@ public class ChordProtocol implements Protocol{
      *  The correct successors would be identified and the request would be checked in their finger tables successively.
      *   Finally the request will reach the node that contains the data item.
      *
+     *  It is a wrapper around lookUp(keyIndex, result) that records the route and builds the response with the names.
+     *
      * @param keyIndex index of the key
-     * @return names of nodes that have been searched and the final node that contains the key
+     * @return names of nodes that have been searched and the final node that contains the key, or null if the lookup
+     *     failed
      */
     public LookUpResponse lookUp(int keyIndex){
-        int ringSize = 1 << m;
-        int targetIndex = keyIndex % ringSize;
-        
-        NodeInterface current = ring.firstEntry().getValue();
-        LinkedHashSet<String> visited = new LinkedHashSet<>();
+        LookupResult result = new LookupResult(true);
+        lookUp(keyIndex, result);
+        return result.isFailed() ? null : result.toResponse(ring);
+    }
+
+
+
+    /**
+     * This method performs the lookup operation without allocating. The destination, the hop count and (if the result
+     * records routes) the ordinals of the visited nodes are written into the given result, which can be reused for
+     * the next lookup. The lookup starts at the first node of the ring.
+     *
+     *  A node is responsible for the key if the key index is in (predecessor index, node index]. The routing uses the
+     *  ordinals of the ring and primitive interval checks, the node names are never looked up.
+     *
+     *  If a location cache is set, each node checks its cache before its fingers, and the origin caches the range of
+     *  the responsible node when the lookup ends, also when a node on the route took it from its cache (see
+     *  LocationCache). The cache is not used while nodes have failed.
+     *
+     *  If nodes of the ring have failed the lookup starts at the first live node. Without failureTolerant the lookup
+     *  fails as soon as it is routed to a failed node. With failureTolerant failed fingers are skipped and the
+     *  successor list takes the place of a failed successor (see lookUpTolerant()).
+     *
+     * @param keyIndex index of the key
+     * @param result the result buffer that is filled
+     */
+    public void lookUp(int keyIndex, LookupResult result){
+        lookUp(keyIndex, ring.failedCount() == 0 ? ring.first() : ring.firstLive(), result);
+    }
+
 
-        int hopLimit = 3 * Math.max(1, m) + ringSize;
 
+    /**
+     * This method performs the lookup operation starting at the given node, see lookUp(int, LookupResult).
+     *
+     * @param keyIndex index of the key
+     * @param origin ordinal of the node the lookup starts at. the lookup fails if the node has failed
+     * @param result the result buffer that is filled
+     */
+    public void lookUp(int keyIndex, int origin, LookupResult result){
+        long target = Math.floorMod((long) keyIndex, ring.ringLength);
+        result.reset();
+        if (origin < 0 || ring.failed[origin]) {
+            return;
+        }
+        int current = origin;
+        if (failureTolerant) {
+            lookUpTolerant(current, target, result);
+            return;
+        }
+        // routing always gets closer to the key, so no lookup visits more than all the nodes
+        int hopLimit = 3 * Math.max(1, m) + ring.size();
+        LocationCache cache = ring.failedCount() == 0 ? this.cache : null;
+        LookupCounters.Stripe counters = (this.counters != null) ? this.counters.stripe(ring) : null;
+        boolean cacheHit = false;
+        boolean originHit = false;
+
+        for (int hops = 0; hops < hopLimit; hops++){
+            result.visit(current, ring.ownerOf(current));
+            int next = (cache != null) ? cache.get(current, target) : -1;
+            if (next >= 0 && next != current) {
+                cacheHit = true;
+                originHit |= hops == 0;
+                if (counters != null) {
+                    counters.cacheHits[ring.ownerOf(current)]++;
+                }
+            } else {
+                next = nextHop(current, target, counters);
+            }
+            if (next < 0) {
+                if (counters != null) {
+                    counters.terminated[ring.ownerOf(current)]++;
+                }
+                result.setDestination(current);
+                if (cache != null) {
+                    cache.recordLookup(cacheHit, originHit);
+                    // an owner found through a cache is as good as one found through the fingers
+                    if (current != origin) {
+                        cache.put(origin, ring.idAt(ring.predecessorOf(current)), ring.idAt(current), current);
+                    }
+                }
+                return;
+            }
+            if (ring.failed[next]) { // dead end, the lookup fails
+                return;
+            }
+            if (counters != null && ring.ownerOf(next) != ring.ownerOf(current)) {
+                counters.forwarded[ring.ownerOf(current)]++;
+            }
+            current = next;
+        }
+        result.setDestination(current);
+    }
+
+    /**
+     * The lookup loop of the failure tolerant mode. Failed nodes are skipped, at each node:
+     *     1) if the predecessor is live and the key is in (predecessor, node] the lookup ends here
+     *     2) the first live entry of the successor list is the successor. if the key is in (node, successor] the
+     *        successor is responsible and the lookup ends there
+     *     3) otherwise go to the live finger or successor list entry that most closely precedes the key (or the
+     *        successor if there is none)
+     * If every entry of the successor list has failed only step 3 is possible, and the lookup fails if it finds no
+     * live node either.
+     */
+    private void lookUpTolerant(int current, long target, LookupResult result){
+        int hopLimit = 3 * Math.max(1, m) + ring.size();
+        LookupCounters.Stripe counters = (this.counters != null) ? this.counters.stripe(ring) : null;
         for (int hops = 0; hops < hopLimit; hops++){
-            visited.add(name(current));
-            
-            // Check if current node contains the key
-            Object data = current.getData();
-            if (data != null && ((LinkedHashSet<Object>) data).contains(targetIndex)) {
-                return new LookUpResponse(visited, id(current), name(current));
-            }
-            
-            NodeInterface successor = successor(current);
-
-            // Check if key is in the range between current and successor 
-            Interval interval = new OpenClosedInterval(id(current), id(successor));
-            boolean inRange = interval.contains(targetIndex, id(current), id(successor), ringSize);
-            
-            if (inRange) {
-                // Successor is responsible - visit it and check if it has the key
-                visited.add(name(successor));
-                Object successorData = successor.getData();
-                if (successorData != null && ((LinkedHashSet<Object>) successorData).contains(targetIndex)) {
-                    return new LookUpResponse(visited, id(successor), name(successor));
+            result.visit(current, ring.ownerOf(current));
+            long id = ring.idAt(current);
+            int predecessor = ring.predecessorOf(current);
+            if (!ring.failed[predecessor] && Interval.inOpenClosed(target, ring.idAt(predecessor), id)) {
+                if (counters != null) {
+                    counters.terminated[ring.ownerOf(current)]++;
                 }
-                // Successor doesn't have the key but is responsible - return it anyway
-                return new LookUpResponse(visited, id(successor), name(successor));
+                result.setDestination(current);
+                return;
+            }
+            int successor = ring.liveSuccessorOf(current);
+            int next;
+            if (successor < 0) { // keep routing on the fingers, the lookup only fails if there is no live hop
+                next = closestLive(current, target);
+                if (next < 0) {
+                    return;
+                }
+            } else if (Interval.inOpenClosed(target, id, ring.idAt(successor))) {
+                if (counters != null) {
+                    counters.levels[0]++;
+                    counters.terminated[ring.ownerOf(successor)]++;
+                    if (ring.ownerOf(successor) != ring.ownerOf(current)) {
+                        counters.forwarded[ring.ownerOf(current)]++;
+                    }
+                }
+                result.visit(successor, ring.ownerOf(successor));
+                result.setDestination(successor);
+                return;
+            } else {
+                next = closestLive(current, target);
+                next = (next >= 0) ? next : successor;
+            }
+            if (counters != null && ring.ownerOf(next) != ring.ownerOf(current)) {
+                counters.forwarded[ring.ownerOf(current)]++;
+            }
+            current = next;
+        }
+        result.setDestination(current);
+    }
+
+
+
+    /**
+     * This method does one routing step of the lookup.
+     *     1) if the node is responsible for the key (key in (predecessor, node]) the lookup ends here
+     *     2) if the key is in (node, successor] the successor is responsible, go to the successor
+     *     3) otherwise go to the closest finger preceding the key (or the successor if there is none)
+     *
+     * @param ordinal ordinal of the current node
+     * @param target index of the key, a position on the ring
+     * @return ordinal of the next node, or -1 if the current node is responsible for the key
+     */
+    public int nextHop(int ordinal, long target){
+        return nextHop(ordinal, target, null);
+    }
+
+    // nextHop() that counts the finger level it takes, level 0 is the successor. counters may be null
+    private int nextHop(int ordinal, long target, LookupCounters.Stripe counters){
+        long id = ring.idAt(ordinal);
+        if (Interval.inOpenClosed(target, ring.idAt(ring.predecessorOf(ordinal)), id)) {
+            return -1;
+        }
+        int successor = ring.successorOf(ordinal);
+        if (Interval.inOpenClosed(target, id, ring.idAt(successor))) {
+            if (counters != null) {
+                counters.levels[0]++;
+            }
+            return successor;
+        }
+        // Key not in current's range, use finger table to jump closer
+        int level = closest(ordinal, target);
+        if (counters != null) {
+            counters.levels[level]++;
+        }
+        return (level > 0) ? ring.finger(ordinal, level) : successor;
+    }
+
+    // returns the ordinal of the live finger or successor list entry that most closely precedes the target, or -1 if
+    // there is none. the fingers go from far to near, so the first live finger in range is the best finger
+    private int closestLive(int ordinal, long targetId) {
+        long a = ring.idAt(ordinal);
+        int best = -1;
+        long bestDistance = -1;
+        for (int i = m; i >= 1; i--) {
+            int f = ring.finger(ordinal, i);
+            if (!ring.failed[f] && Interval.inOpenOpen(ring.idAt(f), a, targetId)) {
+                best = f;
+                bestDistance = Math.floorMod(ring.idAt(f) - a, ring.ringLength);
+                break;
+            }
+        }
+        for (int j = 1; j <= ring.successorListLength(); j++) {
+            int s = ring.successorAt(ordinal, j);
+            if (!ring.failed[s] && Interval.inOpenOpen(ring.idAt(s), a, targetId)) {
+                long distance = Math.floorMod(ring.idAt(s) - a, ring.ringLength);
+                if (distance > bestDistance) {
+                    best = s;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    // returns the level of the closest finger preceding the target, or 0 if there is none
+    private int closest(int ordinal, long targetId) {
+        long a = ring.idAt(ordinal);
+        for (int i = m; i >= 1; i--) {
+            int f = ring.finger(ordinal, i);
+            if (Interval.inOpenOpen(ring.idAt(f), a, targetId)) return i;
+        }
+        return 0;
+    }
+
+
+
+
+
+    /**
+     * This method adds a node to the ring and repairs the finger tables in place, instead of building the overlay
+     * network and the finger tables again. The node is hashed, put in the network, linked between its predecessor and
+     * successor, and gets its own fingers. Of the other nodes only the fingers that now point to the new node are
+     * changed (see FingerTableBuilder.repair()).
+     *
+     * Unlike join(), this works on the ring with global knowledge and needs no messages, so lookUp() sees the node
+     * right away. The keys in (predecessor, node] move from the successor to the node in one range transfer.
+     *
+     * With virtual nodes each token is inserted and repaired this way, tokens whose index is already used are
+     * skipped.
+     *
+     * @param node the new node, its name must not be in the network
+     * @return number of finger entries that were changed
+     */
+    public int addNode(NodeInterface node){
+        if(dynamicMembership){
+            throw new IllegalStateException("the ring is not updated once dynamic membership is enabled");
+        }
+        int[] tokens = freeTokens(node.getName());
+        int p = ring.addPhysical(node);
+        network.addNode(node.getName(), node);
+        if(cache != null){
+            cache.invalidateAll();
+        }
+
+        int changed = 0;
+        for(int id : tokens){
+            int ordinal = ring.insert(id, p);
+            int predecessor = ring.predecessorOf(ordinal);
+            int successor = ring.successorOf(ordinal);
+            changed += FingerTableBuilder.repair(ring, ordinal, predecessor, successor, true);
+            if(successor != ordinal && ring.ownerOf(successor) != p){
+                moveKeys(ring.nodeAt(successor), ring.idAt(predecessor), id, node);
+            }
+        }
+        int primary = ring.primaryOrdinal(p);
+        node.setId(ring.idAt(primary));
+        node.addNeighbor(NodeType.SUCCESSOR, ring.nodeAt(ring.nextPrimary(primary)));
+        ring.nodeAt(ring.previousPrimary(primary)).addNeighbor(NodeType.SUCCESSOR, node);
+        node.setRoutingTable(new FingerTable(ring, primary));
+        return changed;
+    }
+
+
+
+    /**
+     * This method removes a node from the ring and repairs the finger tables in place. Its predecessor is linked to
+     * its successor and every finger that pointed to the node now points to its successor. The keys of the node move
+     * to its successor. With virtual nodes this is done for every token of the node, and the keys of each token move
+     * to the node of the token that follows it.
+     *
+     * @param node a node on the ring, it must not be the last one
+     * @return number of finger entries that were changed
+     */
+    public int removeNode(NodeInterface node){
+        if(dynamicMembership){
+            throw new IllegalStateException("the ring is not updated once dynamic membership is enabled");
+        }
+        int ordinal = ring.ordinalOf(node.getId());
+        if(ordinal < 0 || ring.nodeAt(ordinal) != node){
+            throw new IllegalArgumentException(node.getName() + " is not on the ring");
+        }
+        int p = ring.ownerOf(ordinal);
+        int[] tokens = tokensOf(node.getName(), p);
+        if(tokens.length == ring.size()){
+            throw new IllegalStateException("the last node can not leave the ring");
+        }
+        // the node before this one keeps its primary token
+        int previous = ring.previousPrimary(ring.primaryOrdinal(p));
+        if(cache != null){
+            cache.invalidateAll();
+        }
+        int changed = 0;
+        for(int t = 0; t < tokens.length; t++){
+            int token = tokens[t];
+            int predecessor = ring.predecessorOf(token);
+            int successor = ring.successorOf(token);
+            ring.remove(token);
+            changed += FingerTableBuilder.repair(ring, token, predecessor, successor, false);
+            if(t == tokens.length - 1){ // the last token takes the rest of the keys
+                moveKeys(node, node.getId(), node.getId(), ring.nodeAt(successor));
+            } else if(ring.ownerOf(successor) != p){
+                moveKeys(node, ring.idAt(predecessor), ring.idAt(token), ring.nodeAt(successor));
+            }
+        }
+        ring.removePhysical(p);
+        ring.nodeAt(previous).addNeighbor(NodeType.SUCCESSOR, ring.nodeAt(ring.nextPrimary(previous)));
+        network.removeNode(node.getName());
+        return changed;
+    }
+
+
+
+    // the indexes of the tokens of a new node that are not used on the ring, in token order. throws if there is none
+    private int[] freeTokens(String name){
+        int[] tokens = new int[virtualNodes];
+        int count = 0;
+        for(int t = 0; t < virtualNodes; t++){
+            int id = ch.hash(NodeIndex.tokenName(name, t));
+            boolean used = ring.ordinalOf(id) >= 0;
+            for(int i = 0; i < count && !used; i++){
+                used = tokens[i] == id;
+            }
+            if(!used){
+                tokens[count++] = id;
+            }
+        }
+        if(count == 0){
+            int id = ch.hash(name);
+            throw new IllegalArgumentException("index " + id + " is already used by "
+                    + ring.nodeAt(ring.ordinalOf(id)).getName());
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+    // the ordinals of the tokens of physical node p, in token order
+    private int[] tokensOf(String name, int p){
+        int[] tokens = new int[virtualNodes];
+        int count = 0;
+        for(int t = 0; t < virtualNodes; t++){
+            int ordinal = ring.ordinalOf(ch.hash(NodeIndex.tokenName(name, t)));
+            boolean listed = ordinal < 0 || ring.ownerOf(ordinal) != p;
+            for(int i = 0; i < count && !listed; i++){
+                listed = tokens[i] == ordinal;
+            }
+            if(!listed){
+                tokens[count++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+
+
+
+    /**
+     * This method checks the finger tables against a full build of the current ring. It is used to verify that
+     * addNode() and removeNode() leave the same fingers as buildFingerTable() would.
+     *
+     * @return number of finger entries (and successor or predecessor links) that differ from a full build, 0 if the
+     *     tables are correct
+     */
+    public int verifyFingerTable(){
+        return FingerTableBuilder.verify(ring);
+    }
+
+
+
+
+
+    /**
+     * This method checks that every node on the ring stores exactly the keys in (predecessor, node]. With virtual
+     * nodes a node must store exactly the keys of the ranges of its tokens.
+     *
+     * @return number of keys stored on a node that is not responsible for them
+     */
+    public int verifyKeyPlacement(){
+        // keys of each physical node that are in the range of one of its tokens
+        int[] placed = new int[ring.physicalLimit()];
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            placed[ring.ownerOf(ordinal)] += ring.nodeAt(ordinal)
+                    .getDataRange(ring.idAt(ring.predecessorOf(ordinal)), ring.idAt(ordinal)).length;
+        }
+        int misplaced = 0;
+        for(int p = 0; p < ring.physicalLimit(); p++){
+            NodeInterface node = ring.physicalNode(p);
+            if(node != null){
+                misplaced += node.getDataRange(node.getId(), node.getId()).length - placed[p];
+            }
+        }
+        return misplaced;
+    }
+
+
+
+    /**
+     * This method switches the protocol to dynamic membership. Every node on the ring gets its predecessor as the
+     * PREDECESSOR neighbor and its own copy of its fingers, so nodes can join and leave with join(), leave(),
+     * stabilize(), notify() and fixFingers() instead of rebuilding the whole ring. The ring arrays are not updated by
+     * those operations; lookUp() keeps routing on the ring as it was when this method was called.
+     *
+     * The nodes only know one index each, so this does not work with virtual nodes.
+     */
+    public void enableDynamicMembership(){
+        if(dynamicMembership){
+            return;
+        }
+        if(virtualNodes > 1){
+            throw new IllegalStateException("dynamic membership does not support virtual nodes");
+        }
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            NodeInterface node = ring.nodeAt(ordinal);
+            node.addNeighbor(NodeType.PREDECESSOR, ring.nodeAt(ring.predecessorOf(ordinal)));
+            FingerTable table = new FingerTable(m, null);
+            for(int i = 1; i <= m; i++){
+                table.set(i, ring.nodeAt(ring.finger(ordinal, i)));
+            }
+            node.setRoutingTable(table);
+        }
+        dynamicMembership = true;
+    }
+
+
+
+    /**
+     * This method finds the successor of an index by routing from the given node with the nodes' own successors and
+     * fingers. Every hop to another node counts as a message.
+     *
+     * @param start the node the search starts at
+     * @param id a position on the ring
+     * @return the first live node at or after the position
+     */
+    public NodeInterface findSuccessor(NodeInterface start, long id){
+        NodeInterface current = start;
+        int hopLimit = 3 * Math.max(1, m) + network.getSize();
+        for(int hops = 0; hops < hopLimit; hops++){
+            NodeInterface successor = liveSuccessor(current);
+            if(successor == current || Interval.inOpenClosed(id, current.getId(), successor.getId())){
+                return successor;
+            }
+            NodeInterface next = closestPrecedingFinger(current, id);
+            if(next == current){
+                next = successor;
             }
+            messages++;
+            current = next;
+        }
+        return liveSuccessor(current);
+    }
+
+
+
+    /**
+     * This method adds a node to the ring (chord join). The node asks the bootstrap node for its successor, and starts
+     * with no predecessor and all fingers pointing to the successor, and stabilizes once so its successor takes it as
+     * predecessor. The rest of the ring learns about the node with the following stabilize() and fixFingers() rounds.
+     *
+     * The node must already be in the network and have its id set.
+     *
+     * @param node the joining node
+     * @param bootstrap any node that is already on the ring
+     */
+    public void join(NodeInterface node, NodeInterface bootstrap){
+        enableDynamicMembership();
+        messages++; // join request to the bootstrap node
+        NodeInterface successor = findSuccessor(bootstrap, node.getId());
+        node.removeNeighbor(NodeType.PREDECESSOR);
+        node.addNeighbor(NodeType.SUCCESSOR, successor);
+        node.setRoutingTable(new FingerTable(m, successor));
+        // stabilize once right away, so the successor knows the node before it could leave
+        stabilize(node);
+    }
+
+
 
-            // Key not in current's range, use finger table to jump closer
-            NodeInterface nextHop = closest(current, targetIndex, m);
-            current = (nextHop != null) ? nextHop : successor;
-            
+    /**
+     * This method verifies the successor of the node and tells the successor about the node (chord stabilize). If the
+     * predecessor of the successor is between the node and its successor, it has joined in between and becomes the new
+     * successor.
+     *
+     * @param node the node that stabilizes
+     */
+    public void stabilize(NodeInterface node){
+        NodeInterface successor = liveSuccessor(node);
+        messages++; // ask the successor for its predecessor
+        NodeInterface x = successor.getNeighbor(NodeType.PREDECESSOR);
+        if(x != null && isLive(x) && x != node
+                && (successor == node || Interval.inOpenOpen(x.getId(), node.getId(), successor.getId()))){
+            successor = x;
         }
+        node.addNeighbor(NodeType.SUCCESSOR, successor);
+        if(successor != node){
+            messages++;
+            notify(successor, node);
+        }
+    }
+
+
 
-        return new LookUpResponse(visited, id(current), name(current));
+    /**
+     * The candidate thinks it might be the predecessor of the node (chord notify). The node accepts it if it has no
+     * live predecessor or if the candidate is between its predecessor and itself. When the node accepts it, the keys of
+     * the node that are not in (candidate, node] move to the candidate.
+     *
+     * @param node the node that is notified
+     * @param candidate the node that might be the predecessor
+     */
+    public void notify(NodeInterface node, NodeInterface candidate){
+        NodeInterface predecessor = node.getNeighbor(NodeType.PREDECESSOR);
+        if(predecessor == null || !isLive(predecessor)
+                || Interval.inOpenOpen(candidate.getId(), predecessor.getId(), node.getId())){
+            node.addNeighbor(NodeType.PREDECESSOR, candidate);
+            if(candidate != node){
+                moveKeys(node, node.getId(), candidate.getId(), candidate);
+            }
+        }
     }
 
-    private String name(NodeInterface n) {
-        try { return n.getName(); } catch (Exception e) { return String.valueOf(id(n)); }
+
+
+    /**
+     * This method refreshes one finger of the node (chord fix_fingers). Each call refreshes the next finger, so after m
+     * calls all the fingers have been refreshed once.
+     *
+     * @param node the node whose finger is refreshed
+     */
+    public void fixFingers(NodeInterface node){
+        FingerTable table = fingers(node);
+        int i = table.nextFinger;
+        long start = (node.getId() + (1L << (i - 1))) % (1L << m);
+        table.set(i, findSuccessor(node, start));
+        table.nextFinger = i == m ? 1 : i + 1;
     }
 
-    private int id(NodeInterface n) {
-        try { return n.getId(); } catch (Exception e) { return -1; }
+
+
+    /**
+     * This method removes a node from the ring gracefully. The node hands its keys to its successor, tells its
+     * predecessor and successor about each other and is removed from the network. Fingers of other nodes that still
+     * point to it are skipped until fixFingers() replaces them.
+     *
+     * @param node the leaving node
+     */
+    public void leave(NodeInterface node){
+        enableDynamicMembership();
+        NodeInterface successor = liveSuccessor(node);
+        NodeInterface predecessor = node.getNeighbor(NodeType.PREDECESSOR);
+        if(successor != node){
+            messages++;
+            moveKeys(node, node.getId(), node.getId(), successor);
+            if(predecessor != null && isLive(predecessor) && predecessor != node){
+                successor.addNeighbor(NodeType.PREDECESSOR, predecessor);
+            } else {
+                successor.removeNeighbor(NodeType.PREDECESSOR);
+            }
+        }
+        if(predecessor != null && isLive(predecessor) && predecessor != node){
+            messages++;
+            predecessor.addNeighbor(NodeType.SUCCESSOR, successor);
+        }
+        network.removeNode(node.getName());
     }
 
-    private NodeInterface successor(NodeInterface n) {
-        try {
-            NodeInterface s = n.getNeighbor(NodeType.SUCCESSOR);
-            if (s != null) return s;
-        } catch (Exception ignored) {}
-        Map.Entry<Integer, NodeInterface> e = ring.higherEntry(id(n));
-        return (e != null) ? e.getValue() : ring.firstEntry().getValue();
+
+
+    // moves the keys of the node in (low, high] to the target and counts them
+    private void moveKeys(NodeInterface from, int low, int high, NodeInterface to){
+        int count = from.moveDataRange(low, high, to);
+        keysMoved += count;
+        keyBytesMoved += (long) count * Integer.BYTES;
     }
 
-    private NodeInterface closest(NodeInterface n, int targetId, int M) {
-        try {
-            NodeInterface[] fingers = (NodeInterface[]) n.getRoutingTable();
-            if (fingers == null) return null;
-            int a = id(n);
-            for (int i = fingers.length - 1; i >= 0; i--) {
-                NodeInterface f = fingers[i];
-                if (f == null) continue;
-                int x = id(f);
-                boolean inRange = (a < targetId)
-                        ? (x > a && x < targetId)
-                        : (x > a || x < targetId);
-                if (inRange) return f;
+    // a node is live while it is in the network
+    private boolean isLive(NodeInterface node){
+        return network.getNode(node.getName()) == node;
+    }
+
+    // the successor of the node. if the successor is gone the first live finger takes its place, if there is none
+    // the node is alone on the ring and is its own successor
+    private NodeInterface liveSuccessor(NodeInterface node){
+        NodeInterface successor = node.getSuccessor();
+        if(successor != null && isLive(successor)){
+            return successor;
+        }
+        FingerTable table = fingers(node);
+        for(int i = 1; i <= m; i++){
+            NodeInterface f = table.get(i);
+            if(f != null && f != node && isLive(f)){
+                return f;
             }
-        } catch (Exception ignored) {}
-        return null;
+        }
+        return node;
     }
 
+    private FingerTable fingers(NodeInterface node){
+        Object table = node.getRoutingTable();
+        if(table instanceof FingerTable){
+            return (FingerTable) table;
+        }
+        FingerTable own = new FingerTable(m, node);
+        node.setRoutingTable(own);
+        return own;
+    }
+
+    // the live finger of the node that most closely precedes the id, or the node itself if there is none
+    private NodeInterface closestPrecedingFinger(NodeInterface node, long id){
+        FingerTable table = fingers(node);
+        for(int i = m; i >= 1; i--){
+            NodeInterface f = table.get(i);
+            if(f != null && f != node && isLive(f) && Interval.inOpenOpen(f.getId(), node.getId(), id)){
+                return f;
+            }
+        }
+        return node;
+    }
 
 }
@@ -0,0 +1,583 @@
+package protocol;
+
+import p2p.NodeInterface;
+
+import java.util.Arrays;
+
+/**
+ * This class is the compact representation of the chord ring that the protocol routes on. Nodes are identified by
+ * their ordinal. After a build the ordinal is the position of the node on the ring in ascending index order (0 is the
+ * node with the smallest index); nodes added later get a free ordinal, so ordinals stay stable when the membership
+ * changes. Everything the lookup needs is kept in primitive arrays indexed by ordinal:
+ *
+ *     ids          - the node index of each ordinal
+ *     successors   - ordinal of the successor of each node
+ *     predecessors - ordinal of the predecessor of each node
+ *     fingers      - flat finger matrix, fingers[ordinal*m + (i-1)] is the ordinal of the ith finger of the node
+ *     successorLists - the next r nodes of each node, successorLists[ordinal*r + j] is the (j+1)th successor
+ *     failed       - nodes that have failed; they stay on the ring and in the tables of the other nodes
+ *     owners       - the physical node of each ordinal
+ *
+ * The ring order is kept in two parallel arrays, sortedIds (ascending node indexes) and sortedOrdinals (the ordinal of
+ * the node at each position), which are used for the ceiling searches.
+ *
+ * With virtual nodes a physical node has several tokens on the ring, and every token is a node of the ring with its
+ * own ordinal, links and fingers. Physical nodes are numbered separately: physicalNodes[p] is the node object of
+ * physical node p and primaries[p] the ordinal of its primary token, which gives the physical node its index, successor
+ * and finger table in the network. Without virtual nodes the physical numbers are the ordinals of the build.
+ *
+ * The node objects are only kept to report names and to fill the network for printing.
+ */
+public class ChordRing {
+
+    // length of the identifier
+    public final int m;
+
+    // number of positions on the ring, 2^m
+    public final long ringLength;
+
+    // the arrays are package private so the finger table builder can sweep them directly
+    int[] ids;
+    int[] owners;
+    int[] successors;
+    int[] predecessors;
+    int[] fingers;
+    int[] sortedIds;
+    int[] sortedOrdinals;
+    int[] successorLists;
+    boolean[] failed;
+
+    // length of the successor lists
+    private int r;
+
+    // number of failed nodes
+    private int failedCount;
+
+    // number of live nodes, and the number of ordinals in use (live or free)
+    private int size;
+    private int limit;
+
+    // ordinals of removed nodes that can be given to new nodes
+    private int[] free = new int[0];
+    private int freeCount;
+
+    // the physical nodes, removed nodes leave a null
+    private NodeInterface[] physicalNodes;
+    private int[] primaries;
+    private int physicalCount;
+    private int physicalLimit;
+
+    /**
+     * creates the ring from the sorted node index. The finger matrix is allocated but not filled.
+     *
+     * @param index sorted index of the nodes
+     * @param m length of the identifier
+     */
+    public ChordRing(NodeIndex index, int m){
+        int size = index.size();
+        this.m = m;
+        this.ringLength = 1L << m;
+        this.ids = index.ids();
+        this.owners = index.owners();
+        this.successors = new int[size];
+        this.predecessors = new int[size];
+        for(int ordinal = 0; ordinal < size; ordinal++){
+            successors[ordinal] = (ordinal + 1) % size; // wraparound edgecase
+            predecessors[ordinal] = ordinal == 0 ? size - 1 : ordinal - 1;
+        }
+        this.fingers = new int[size * m];
+        this.sortedIds = ids.clone();
+        this.sortedOrdinals = new int[size];
+        for(int position = 0; position < size; position++){
+            sortedOrdinals[position] = position;
+        }
+        this.size = size;
+        this.limit = size;
+        this.failed = new boolean[size];
+        this.physicalCount = index.physicalCount();
+        this.physicalLimit = physicalCount;
+        this.physicalNodes = new NodeInterface[physicalCount];
+        this.primaries = new int[physicalCount];
+        for(int p = 0; p < physicalCount; p++){
+            physicalNodes[p] = index.physicalAt(p);
+            primaries[p] = index.primaryOrdinal(p);
+        }
+        buildSuccessorLists(1);
+    }
+
+    /**
+     * @return number of nodes on the ring
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * ordinals are in 0 ... ordinalLimit()-1, but some of them may belong to removed nodes (see isLive()). Arrays that
+     * are indexed by ordinal should have this length.
+     *
+     * @return one more than the largest ordinal in use
+     */
+    public int ordinalLimit(){
+        return limit;
+    }
+
+    /**
+     * @param ordinal an ordinal below ordinalLimit()
+     * @return true if a node on the ring has the ordinal
+     */
+    public boolean isLive(int ordinal){
+        return owners[ordinal] >= 0;
+    }
+
+    /**
+     * @param position position on the ring in ascending index order, 0 ... size()-1
+     * @return ordinal of the node at the position
+     */
+    public int ordinalAt(int position){
+        return sortedOrdinals[position];
+    }
+
+    /**
+     * @return ordinal of the node with the smallest index
+     */
+    public int first(){
+        return sortedOrdinals[0];
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return index of the node
+     */
+    public int idAt(int ordinal){
+        return ids[ordinal];
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return the node object, with virtual nodes the physical node that owns the token
+     */
+    public NodeInterface nodeAt(int ordinal){
+        return physicalNodes[owners[ordinal]];
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return number of the physical node that owns the token
+     */
+    public int ownerOf(int ordinal){
+        return owners[ordinal];
+    }
+
+    /**
+     * @return number of physical nodes on the ring
+     */
+    public int physicalCount(){
+        return physicalCount;
+    }
+
+    /**
+     * physical nodes are numbered 0 ... physicalLimit()-1, removed nodes keep their number (see physicalNode()).
+     * Arrays that are indexed by physical node should have this length.
+     *
+     * @return one more than the largest physical node number in use
+     */
+    public int physicalLimit(){
+        return physicalLimit;
+    }
+
+    /**
+     * @param p number of the physical node
+     * @return the node object, or null if the node has been removed
+     */
+    public NodeInterface physicalNode(int p){
+        return physicalNodes[p];
+    }
+
+    /**
+     * @param p number of the physical node
+     * @return ordinal of the primary token of the node, it gives the node its index
+     */
+    public int primaryOrdinal(int p){
+        return primaries[p];
+    }
+
+    /**
+     * @param ordinal ordinal of a token
+     * @return ordinal of the next primary token after the token on the ring, the token itself if there is no other
+     */
+    public int nextPrimary(int ordinal){
+        int next = successors[ordinal];
+        for(int n = 0; n < size && next != ordinal && primaries[owners[next]] != next; n++){
+            next = successors[next];
+        }
+        return next;
+    }
+
+    /**
+     * @param ordinal ordinal of a token
+     * @return ordinal of the primary token before the token on the ring, the token itself if there is no other
+     */
+    public int previousPrimary(int ordinal){
+        int previous = predecessors[ordinal];
+        for(int n = 0; n < size && previous != ordinal && primaries[owners[previous]] != previous; n++){
+            previous = predecessors[previous];
+        }
+        return previous;
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return ordinal of the successor of the node
+     */
+    public int successorOf(int ordinal){
+        return successors[ordinal];
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return ordinal of the predecessor of the node
+     */
+    public int predecessorOf(int ordinal){
+        return predecessors[ordinal];
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @param i finger number, 1 ... m
+     * @return ordinal of the ith finger of the node
+     */
+    public int finger(int ordinal, int i){
+        return fingers[ordinal * m + i - 1];
+    }
+
+    /**
+     * sets the ith finger of the node
+     * @param ordinal ordinal of the node
+     * @param i finger number, 1 ... m
+     * @param fingerOrdinal ordinal of the finger node
+     */
+    public void setFinger(int ordinal, int i, int fingerOrdinal){
+        fingers[ordinal * m + i - 1] = fingerOrdinal;
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @param j entry of the successor list, 1 ... r
+     * @return ordinal of the jth successor of the node
+     */
+    public int successorAt(int ordinal, int j){
+        return successorLists[ordinal * r + j - 1];
+    }
+
+    /**
+     * @return length of the successor lists
+     */
+    public int successorListLength(){
+        return r;
+    }
+
+    /**
+     * builds the successor list of every node. If the ring has r nodes or less the lists end with the node itself.
+     * @param r length of the successor lists
+     */
+    public void buildSuccessorLists(int r){
+        if(r <= 0){
+            throw new IllegalArgumentException("successor list length must be positive");
+        }
+        this.r = r;
+        this.successorLists = new int[ids.length * r];
+        for(int position = 0; position < size; position++){
+            fillSuccessorList(sortedOrdinals[position]);
+        }
+    }
+
+    /**
+     * returns the first successor in the successor list of the node that has not failed
+     * @param ordinal ordinal of the node
+     * @return ordinal of the successor, or -1 if every node in the list has failed
+     */
+    public int liveSuccessorOf(int ordinal){
+        int row = ordinal * r;
+        for(int j = 0; j < r; j++){
+            int successor = successorLists[row + j];
+            if(!failed[successor]){
+                return successor;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * marks the node as failed. It stays on the ring, but routing must not use it.
+     * @param ordinal ordinal of the node
+     */
+    public void fail(int ordinal){
+        if(!failed[ordinal]){
+            failed[ordinal] = true;
+            failedCount++;
+        }
+    }
+
+    /**
+     * marks every failed node as live again
+     */
+    public void clearFailures(){
+        Arrays.fill(failed, false);
+        failedCount = 0;
+    }
+
+    /**
+     * @param ordinal ordinal of the node
+     * @return true if the node has failed
+     */
+    public boolean isFailed(int ordinal){
+        return failed[ordinal];
+    }
+
+    /**
+     * @return number of failed nodes
+     */
+    public int failedCount(){
+        return failedCount;
+    }
+
+    /**
+     * @return ordinal of the node with the smallest index that has not failed, or -1 if every node has failed
+     */
+    public int firstLive(){
+        for(int position = 0; position < size; position++){
+            if(!failed[sortedOrdinals[position]]){
+                return sortedOrdinals[position];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * returns the ordinal of the first node at or after the given position that has not failed. This is the node
+     * that is responsible for the position once the failed nodes are gone.
+     *
+     * @param position a position on the ring, 0 ... 2^m-1
+     * @return ordinal of the responsible node, or -1 if every node has failed
+     */
+    public int liveCeilingOrdinal(long position){
+        int ordinal = ceilingOrdinal(position);
+        for(int n = 0; n < size; n++){
+            if(!failed[ordinal]){
+                return ordinal;
+            }
+            ordinal = successors[ordinal];
+        }
+        return -1;
+    }
+
+    /**
+     * returns the ordinal of the first node whose index is greater than or equal to the given position. If there is no
+     * such node the position wraps around to the first node of the ring.
+     *
+     * @param position a position on the ring, 0 ... 2^m-1
+     * @return ordinal of the responsible node
+     */
+    public int ceilingOrdinal(long position){
+        int index = lowerBound(position);
+        return sortedOrdinals[index == size ? 0 : index];
+    }
+
+    /**
+     * returns the ordinal of the node that holds the given index, or -1 if there is no such node
+     * @param id index of a node
+     * @return ordinal of the node
+     */
+    public int ordinalOf(int id){
+        int position = Arrays.binarySearch(sortedIds, 0, size, id);
+        return position >= 0 ? sortedOrdinals[position] : -1;
+    }
+
+    /**
+     * returns approximate number of bytes used by the primitive arrays of the ring
+     * @return bytes used by ids, links, fingers, successor lists, failed flags and the sorted arrays
+     */
+    public long memoryBytes(){
+        return 4L * (ids.length + successors.length + predecessors.length + fingers.length + sortedIds.length
+                + sortedOrdinals.length + successorLists.length + owners.length + primaries.length)
+                + 8L * physicalNodes.length + failed.length;
+    }
+
+    /**
+     * first position in the ring order whose index is not smaller than the given value, size() if there is none
+     */
+    int lowerBound(long value){
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(sortedIds[mid] < value){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * first position in the ring order whose index is bigger than the given value, size() if there is none
+     */
+    int upperBound(long value){
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(sortedIds[mid] <= value){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * adds a physical node without tokens, insert() puts its tokens on the ring
+     * @param node the node object
+     * @return number of the physical node
+     */
+    int addPhysical(NodeInterface node){
+        if(physicalLimit == physicalNodes.length){
+            int capacity = Math.max(4, physicalLimit + (physicalLimit >> 1));
+            physicalNodes = Arrays.copyOf(physicalNodes, capacity);
+            primaries = Arrays.copyOf(primaries, capacity);
+        }
+        int p = physicalLimit++;
+        physicalNodes[p] = node;
+        primaries[p] = -1;
+        physicalCount++;
+        return p;
+    }
+
+    /**
+     * removes a physical node whose tokens have all been removed
+     * @param p number of the physical node
+     */
+    void removePhysical(int p){
+        physicalNodes[p] = null;
+        primaries[p] = -1;
+        physicalCount--;
+    }
+
+    /**
+     * inserts a node into the ring order and links it between its predecessor and successor. The fingers of the node
+     * are not set. The first token inserted for a physical node becomes its primary token.
+     *
+     * @param id index of the node, must not be used by another node
+     * @param owner number of the physical node
+     * @return ordinal of the new node
+     */
+    int insert(int id, int owner){
+        int position = lowerBound(id);
+        if(position < size && sortedIds[position] == id){
+            throw new IllegalArgumentException("index " + id + " is already used by " + nodeAt(sortedOrdinals[position]).getName());
+        }
+        int ordinal;
+        if(freeCount > 0){
+            ordinal = free[--freeCount];
+        } else {
+            ordinal = limit++;
+            if(ordinal == ids.length){
+                grow(Math.max(4, ids.length + (ids.length >> 1)));
+            }
+        }
+        if(size == sortedIds.length){
+            sortedIds = Arrays.copyOf(sortedIds, Math.max(4, size + (size >> 1)));
+            sortedOrdinals = Arrays.copyOf(sortedOrdinals, sortedIds.length);
+        }
+        System.arraycopy(sortedIds, position, sortedIds, position + 1, size - position);
+        System.arraycopy(sortedOrdinals, position, sortedOrdinals, position + 1, size - position);
+        sortedIds[position] = id;
+        sortedOrdinals[position] = ordinal;
+        size++;
+
+        ids[ordinal] = id;
+        owners[ordinal] = owner;
+        if(primaries[owner] < 0){
+            primaries[owner] = ordinal;
+        }
+        if(size == 1){
+            successors[ordinal] = ordinal;
+            predecessors[ordinal] = ordinal;
+        } else {
+            int successor = sortedOrdinals[(position + 1) % size];
+            int predecessor = predecessors[successor];
+            successors[predecessor] = ordinal;
+            predecessors[ordinal] = predecessor;
+            successors[ordinal] = successor;
+            predecessors[successor] = ordinal;
+        }
+        failed[ordinal] = false;
+        updateSuccessorLists(ordinal);
+        return ordinal;
+    }
+
+    /**
+     * removes a node from the ring order and links its predecessor and successor. The ordinal is freed.
+     *
+     * @param ordinal ordinal of the node
+     */
+    void remove(int ordinal){
+        int position = Arrays.binarySearch(sortedIds, 0, size, ids[ordinal]);
+        System.arraycopy(sortedIds, position + 1, sortedIds, position, size - position - 1);
+        System.arraycopy(sortedOrdinals, position + 1, sortedOrdinals, position, size - position - 1);
+        size--;
+
+        int predecessor = predecessors[ordinal];
+        int successor = successors[ordinal];
+        successors[predecessor] = successor;
+        predecessors[successor] = predecessor;
+        owners[ordinal] = -1; // the index stays in ids until the ordinal is reused, the finger repair needs it
+        if(failed[ordinal]){
+            failed[ordinal] = false;
+            failedCount--;
+        }
+        if(size > 0){
+            updateSuccessorLists(predecessor);
+        }
+
+        if(freeCount == free.length){
+            free = Arrays.copyOf(free, Math.max(4, free.length * 2));
+        }
+        free[freeCount++] = ordinal;
+    }
+
+    // fills the successor lists of the node and the r nodes before it, the only lists that change when the node is
+    // inserted (or when the node after it is removed)
+    private void updateSuccessorLists(int ordinal){
+        int node = ordinal;
+        for(int n = 0; n <= r && n < size; n++){
+            fillSuccessorList(node);
+            node = predecessors[node];
+        }
+    }
+
+    // walks the successors of the node, the list ends with the node itself once the walk is back at it
+    private void fillSuccessorList(int ordinal){
+        int row = ordinal * r;
+        int successor = successors[ordinal];
+        for(int j = 0; j < r; j++){
+            successorLists[row + j] = successor;
+            if(successor != ordinal){
+                successor = successors[successor];
+            }
+        }
+    }
+
+    private void grow(int capacity){
+        ids = Arrays.copyOf(ids, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        successors = Arrays.copyOf(successors, capacity);
+        predecessors = Arrays.copyOf(predecessors, capacity);
+        fingers = Arrays.copyOf(fingers, capacity * m);
+        successorLists = Arrays.copyOf(successorLists, capacity * r);
+        failed = Arrays.copyOf(failed, capacity);
+    }
+}
@@ -0,0 +1,12 @@
+package protocol;
+
+/**
+ * The ways the finger tables can be built. All of them build identical tables.
+ *
+ *     TREEMAP  - one TreeMap.ceilingEntry() per finger, O(N*m*log N). Kept as the reference to compare against
+ *     SWEEP    - each finger level is filled with a two pointer sweep over the sorted node indexes, O(N*m)
+ *     PARALLEL - the sweep split into node ranges that are built on a ForkJoinPool
+ */
+public enum FingerBuildMode {
+    TREEMAP, SWEEP, PARALLEL
+}
@@ -0,0 +1,94 @@
+package protocol;
+
+import p2p.NodeInterface;
+
+import java.util.Arrays;
+
+/**
+ * This class is the routing table object that is set on the nodes. After a static build the finger entries are stored
+ * in the finger matrix of the chord ring and this is only a view of one row of it; the node objects of the fingers are
+ * looked up when they are needed (eg:- printing the network).
+ *
+ * When the membership of the ring changes dynamically (join, leave, fix_fingers) the nodes keep their own fingers.
+ * The first set() copies the row out of the ring, after that the table holds its own entries.
+ */
+public class FingerTable {
+
+    private final ChordRing ring;
+    private final int ordinal;
+    private final int m;
+
+    // own entries of the table, null while the table is a view of the ring
+    private NodeInterface[] entries;
+
+    // next finger to be refreshed by fix_fingers, 1 ... m
+    int nextFinger = 1;
+
+    /**
+     * @param ring the chord ring that stores the fingers
+     * @param ordinal ordinal of the node that owns this finger table
+     */
+    public FingerTable(ChordRing ring, int ordinal){
+        this.ring = ring;
+        this.ordinal = ordinal;
+        this.m = ring.m;
+    }
+
+    /**
+     * creates a finger table with its own entries, all pointing to the given node
+     * @param m number of fingers
+     * @param node the node every finger points to (eg:- the successor of a node that just joined)
+     */
+    public FingerTable(int m, NodeInterface node){
+        this.ring = null;
+        this.ordinal = -1;
+        this.m = m;
+        this.entries = new NodeInterface[m];
+        Arrays.fill(entries, node);
+    }
+
+    /**
+     * @return number of fingers (m)
+     */
+    public int size(){
+        return m;
+    }
+
+    /**
+     * @param i finger number, 1 ... m
+     * @return the node of the ith finger
+     */
+    public NodeInterface get(int i){
+        if(entries != null){
+            return entries[i - 1];
+        }
+        return ring.nodeAt(ring.finger(ordinal, i));
+    }
+
+    /**
+     * sets the ith finger. If the table is a view of the ring it gets its own copy of the entries first.
+     * @param i finger number, 1 ... m
+     * @param node the node of the ith finger
+     */
+    public void set(int i, NodeInterface node){
+        if(entries == null){
+            entries = new NodeInterface[m];
+            for(int f = 1; f <= m; f++){
+                entries[f - 1] = ring.nodeAt(ring.finger(ordinal, f));
+            }
+        }
+        entries[i - 1] = node;
+    }
+
+    public String toString(){
+        StringBuilder result = new StringBuilder("Fingers: ");
+        for(int i = 1; i <= m; i++){
+            NodeInterface node = get(i);
+            result.append(node == null ? "-" : node.getName());
+            if(i < m){
+                result.append(", ");
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,264 @@
+package protocol;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class fills the finger matrix of a chord ring. The ith finger of node n is the first node at or after
+ * (n + 2^(i-1)) mod 2^m.
+ *
+ * For a fixed level i the start values n + 2^(i-1) grow with n, so the finger of the next node is never before the
+ * finger of the current node (when the ring is unrolled twice, ids[j] + 2^m for the second copy). A pointer per level
+ * only moves forward, which makes the build O(N*m) with no tree or binary search per finger.
+ *
+ * When a node joins or leaves only the fingers that point into the changed arc (pred, x] are affected. For level i
+ * these are the nodes in (pred - 2^(i-1), x - 2^(i-1)], a contiguous run of positions that two binary searches find,
+ * so repair() patches O(m log N + changed fingers) entries instead of rebuilding the matrix.
+ */
+class FingerTableBuilder {
+
+    // number of nodes below which a range is not split any further in the parallel build
+    private static final int PARALLEL_CHUNK = 4096;
+
+    private FingerTableBuilder(){
+    }
+
+    /**
+     * builds the fingers with the given mode
+     * @param ring the ring whose finger matrix is filled
+     * @param mode build mode
+     * @param pool pool used for the parallel build
+     */
+    static void build(ChordRing ring, FingerBuildMode mode, ForkJoinPool pool){
+        switch(mode){
+            case TREEMAP:
+                buildTreeMap(ring);
+                break;
+            case SWEEP:
+                buildSweep(ring, ring.fingers, 0, ring.size());
+                break;
+            case PARALLEL:
+                pool.invoke(new SweepTask(ring, 0, ring.size()));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown finger build mode: " + mode);
+        }
+    }
+
+    /**
+     * builds the fingers with one TreeMap.ceilingEntry() per finger
+     * @param ring the ring whose finger matrix is filled
+     */
+    static void buildTreeMap(ChordRing ring){
+        TreeMap<Integer, Integer> ordinals = new TreeMap<>();
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            ordinals.put(ring.idAt(ordinal), ordinal);
+        }
+        long ringLength = ring.ringLength;
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            long hash = ring.idAt(ordinal);
+            for(int i = 1; i <= ring.m; i++){
+                int start = (int) ((hash + (1L << (i - 1))) % ringLength);
+                Map.Entry<Integer, Integer> successor = ordinals.ceilingEntry(start);
+                if(successor == null){ // wraparound case, return first key found
+                    successor = ordinals.firstEntry();
+                }
+                ring.setFinger(ordinal, i, successor.getValue());
+            }
+        }
+    }
+
+    /**
+     * fills the fingers of the nodes at ring positions from ... to-1 with a two pointer sweep per level
+     * @param ring the ring whose fingers are built
+     * @param fingers the finger matrix that is filled, indexed by ordinal like ring.fingers
+     * @param from first position (inclusive)
+     * @param to last position (exclusive)
+     */
+    static void buildSweep(ChordRing ring, int[] fingers, int from, int to){
+        if(from >= to){
+            return;
+        }
+        int[] ids = ring.sortedIds;
+        int[] ordinals = ring.sortedOrdinals;
+        int size = ring.size();
+        int m = ring.m;
+        long ringLength = ring.ringLength;
+
+        // pointer[i] is a position in the ring unrolled twice: position j < size is ids[j], j >= size is
+        // ids[j-size] + 2^m. it starts at the finger of the first node in the range
+        int[] pointer = new int[m];
+        for(int i = 0; i < m; i++){
+            long target = ids[from] + (1L << i);
+            pointer[i] = target < ringLength
+                    ? lowerBound(ids, size, target)
+                    : size + lowerBound(ids, size, target - ringLength);
+        }
+
+        for(int position = from; position < to; position++){
+            long id = ids[position];
+            int row = ordinals[position] * m;
+            for(int i = 0; i < m; i++){
+                long target = id + (1L << i);
+                int j = pointer[i];
+                while(unrolled(ids, size, j, ringLength) < target){
+                    j++;
+                }
+                pointer[i] = j;
+                fingers[row + i] = ordinals[j >= size ? j - size : j];
+            }
+        }
+    }
+
+    /**
+     * patches the fingers after the node with the given ordinal joined or left the ring. For a join the ring already
+     * contains the node, whose own fingers are filled here; the fingers in the affected ranges move from its successor
+     * to it. For a leave the node has been removed from the ring order but its index is still in ring.ids; the
+     * fingers in the affected ranges move from it to its successor.
+     *
+     * @param ring the ring whose finger matrix is patched
+     * @param ordinal ordinal of the node that joined or left
+     * @param predecessor ordinal of the predecessor of the node
+     * @param successor ordinal of the successor of the node
+     * @param joined true for a join, false for a leave
+     * @return number of finger entries that were changed
+     */
+    static int repair(ChordRing ring, int ordinal, int predecessor, int successor, boolean joined){
+        int m = ring.m;
+        int size = ring.size();
+        int[] fingers = ring.fingers;
+        int[] ordinals = ring.sortedOrdinals;
+        long ringLength = ring.ringLength;
+        long id = ring.ids[ordinal];
+        long predecessorId = ring.ids[predecessor];
+        int value = joined ? ordinal : successor;
+        int changed = 0;
+
+        if(joined){
+            int row = ordinal * m;
+            for(int i = 0; i < m; i++){
+                fingers[row + i] = ring.ceilingOrdinal((id + (1L << i)) % ringLength);
+            }
+            changed += m;
+        }
+        if(predecessor == ordinal){ // the node is alone on the ring, nobody else has fingers
+            return changed;
+        }
+
+        for(int i = 0; i < m; i++){
+            long step = 1L << i;
+            // nodes n with n + 2^i in (pred, x], i.e. n in (pred - 2^i, x - 2^i]
+            long low = Math.floorMod(predecessorId - step, ringLength);
+            long high = Math.floorMod(id - step, ringLength);
+            int from = ring.upperBound(low);
+            int to = ring.upperBound(high);
+            if(low <= high){
+                changed += patch(fingers, ordinals, from, to, m, i, ordinal, value);
+            } else {
+                changed += patch(fingers, ordinals, from, size, m, i, ordinal, value);
+                changed += patch(fingers, ordinals, 0, to, m, i, ordinal, value);
+            }
+        }
+        return changed;
+    }
+
+    // sets level i of the nodes at positions from ... to-1 to the value, skipping the joining node itself
+    private static int patch(int[] fingers, int[] ordinals, int from, int to, int m, int i, int ordinal, int value){
+        int changed = 0;
+        for(int position = from; position < to; position++){
+            int node = ordinals[position];
+            if(node != ordinal){
+                fingers[node * m + i] = value;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * compares the finger matrix of the ring with a full sweep build, and the successor, predecessor and successor list
+     * of every node with its neighbors in the ring order
+     * @param ring the ring to check
+     * @return number of finger entries and links that differ from a full build
+     */
+    static int verify(ChordRing ring){
+        int m = ring.m;
+        int[] expected = new int[ring.fingers.length];
+        buildSweep(ring, expected, 0, ring.size());
+        int mismatches = 0;
+        int size = ring.size();
+        for(int position = 0; position < size; position++){
+            int ordinal = ring.ordinalAt(position);
+            if(ring.successorOf(ordinal) != ring.ordinalAt((position + 1) % size)){
+                mismatches++;
+            }
+            if(ring.predecessorOf(ordinal) != ring.ordinalAt((position + size - 1) % size)){
+                mismatches++;
+            }
+            for(int j = 1; j <= ring.successorListLength(); j++){
+                int expectedSuccessor = j < size ? ring.ordinalAt((position + j) % size) : ordinal;
+                if(ring.successorAt(ordinal, j) != expectedSuccessor){
+                    mismatches++;
+                }
+            }
+            int row = ordinal * m;
+            for(int i = 0; i < m; i++){
+                if(expected[row + i] != ring.fingers[row + i]){
+                    mismatches++;
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    // the id at position j of the ring unrolled twice
+    private static long unrolled(int[] ids, int size, int j, long ringLength){
+        return j < size ? ids[j] : ids[j - size] + ringLength;
+    }
+
+    // first position with an id not smaller than the target, size if there is none
+    private static int lowerBound(int[] ids, int size, long target){
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(ids[mid] < target){
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * builds the fingers of a position range, splitting it in halves until it is small enough to sweep
+     */
+    private static final class SweepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ChordRing ring;
+        private final int from;
+        private final int to;
+
+        SweepTask(ChordRing ring, int from, int to){
+            this.ring = ring;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= PARALLEL_CHUNK){
+                buildSweep(ring, ring.fingers, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SweepTask(ring, from, mid), new SweepTask(ring, mid, to));
+        }
+    }
+}
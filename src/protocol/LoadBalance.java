@@ -0,0 +1,170 @@
+package protocol;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * This class measures how evenly the keys and the ring are spread over the nodes. For every physical node it counts
+ * the keys the node is responsible for and the size of the arc it owns (the positions between the predecessor and
+ * the node, summed over all tokens of the node with virtual nodes). Both are computed in one sweep of the sorted keys
+ * against the sorted node index, the same merge the bulk key assignment does.
+ *
+ * Each of the two distributions is summarized with max/mean, standard deviation, the Gini coefficient (0 is a
+ * perfectly even spread, values close to 1 mean a few nodes have almost everything) and a histogram.
+ */
+public class LoadBalance {
+
+    // number of buckets of the histograms
+    public static final int BUCKETS = 10;
+
+    // length of the identifier
+    public final int m;
+
+    // number of physical nodes and keys
+    public final int nodes;
+    public final int keys;
+
+    // keys per physical node and arc per physical node, indexed by the physical node number of the node index
+    public final long[] keysPerNode;
+    public final long[] arcPerNode;
+
+    public final Distribution keyLoad;
+    public final Distribution arcLoad;
+
+    private LoadBalance(int m, int keys, long[] keysPerNode, long[] arcPerNode){
+        this.m = m;
+        this.nodes = keysPerNode.length;
+        this.keys = keys;
+        this.keysPerNode = keysPerNode;
+        this.arcPerNode = arcPerNode;
+        this.keyLoad = new Distribution(keysPerNode);
+        this.arcLoad = new Distribution(arcPerNode);
+    }
+
+    /**
+     * measures the load of the nodes of the index
+     *
+     * @param index the node index
+     * @param sortedKeys key indexes in ascending order
+     * @param m length of the identifier
+     * @return the load balance
+     */
+    public static LoadBalance of(NodeIndex index, int[] sortedKeys, int m){
+        long ringLength = 1L << m;
+        int size = index.size();
+        long[] keysPerNode = new long[index.physicalCount()];
+        long[] arcPerNode = new long[index.physicalCount()];
+        int k = 0;
+        for(int ordinal = 0; ordinal < size; ordinal++){
+            int id = index.idAt(ordinal);
+            int start = k;
+            while(k < sortedKeys.length && sortedKeys[k] <= id){
+                k++;
+            }
+            int owner = index.ownerAt(ordinal);
+            keysPerNode[owner] += k - start;
+            long previous = (ordinal == 0) ? index.idAt(size - 1) - ringLength : index.idAt(ordinal - 1);
+            arcPerNode[owner] += size == 1 ? ringLength : id - previous;
+        }
+        // wrap around: keys after the biggest node index belong to the first node
+        if(size > 0){
+            keysPerNode[index.ownerAt(0)] += sortedKeys.length - k;
+        }
+        return new LoadBalance(m, sortedKeys.length, keysPerNode, arcPerNode);
+    }
+
+    /**
+     * @return one line summary of the key and arc load
+     */
+    public String toString(){
+        return String.format("keys per node min: %d mean: %.2f max: %d max/mean: %.2f stddev: %.2f gini: %.3f,"
+                        + " arc per node min: %d mean: %.2f max: %d max/mean: %.2f gini: %.3f",
+                keyLoad.min, keyLoad.mean, keyLoad.max, keyLoad.maxOverMean(), keyLoad.stddev, keyLoad.gini,
+                arcLoad.min, arcLoad.mean, arcLoad.max, arcLoad.maxOverMean(), arcLoad.gini);
+    }
+
+    /**
+     * formats the load balance as json. Numbers are always written with a '.' so the file doesn't depend on the
+     * locale.
+     *
+     * @return the json document
+     */
+    public String toJson(){
+        String newLine = System.lineSeparator();
+        return "{" + newLine
+                + "  \"m\": " + m + "," + newLine
+                + "  \"nodes\": " + nodes + "," + newLine
+                + "  \"keys\": " + keys + "," + newLine
+                + "  \"keysPerNode\": " + keyLoad.toJson() + "," + newLine
+                + "  \"arcPerNode\": " + arcLoad.toJson() + newLine
+                + "}" + newLine;
+    }
+
+    /**
+     * Summary statistics and histogram of one value per node.
+     */
+    public static final class Distribution {
+        public final int count;
+        public final long min;
+        public final long max;
+        public final long sum;
+        public final double mean;
+        public final double stddev;
+        public final double gini;
+        // bucket i counts the nodes with a value in [i*bucketWidth, (i+1)*bucketWidth)
+        public final long bucketWidth;
+        public final int[] histogram = new int[BUCKETS];
+
+        Distribution(long[] values){
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            long sum = 0;
+            for(long value : values){
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                sum += value;
+            }
+            this.count = values.length;
+            this.min = count == 0 ? 0 : min;
+            this.max = max;
+            this.sum = sum;
+            this.mean = count == 0 ? 0.0 : (double) sum / count;
+            this.bucketWidth = max / BUCKETS + 1;
+
+            double squares = 0;
+            for(long value : values){
+                squares += (value - mean) * (value - mean);
+                histogram[(int) (value / bucketWidth)]++;
+            }
+            this.stddev = count == 0 ? 0.0 : Math.sqrt(squares / count);
+
+            // gini = sum((2i - n - 1) * x_i) / (n * sum(x)) over the values in ascending order, i = 1 ... n
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double weighted = 0;
+            for(int i = 0; i < count; i++){
+                weighted += (2.0 * (i + 1) - count - 1) * sorted[i];
+            }
+            this.gini = sum == 0 ? 0.0 : weighted / ((double) count * sum);
+        }
+
+        /**
+         * @return largest value divided by the mean, 1 is a perfectly even spread
+         */
+        public double maxOverMean(){
+            return mean == 0 ? 0.0 : max / mean;
+        }
+
+        String toJson(){
+            StringBuilder json = new StringBuilder();
+            json.append(String.format(Locale.ROOT,
+                    "{\"min\": %d, \"max\": %d, \"mean\": %.4f, \"maxOverMean\": %.4f, \"stddev\": %.4f,"
+                            + " \"gini\": %.4f, \"bucketWidth\": %d, \"histogram\": [",
+                    min, max, mean, maxOverMean(), stddev, gini, bucketWidth));
+            for(int i = 0; i < BUCKETS; i++){
+                json.append(i == 0 ? "" : ", ").append(histogram[i]);
+            }
+            return json.append("]}").toString();
+        }
+    }
+}
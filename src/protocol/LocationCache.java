@@ -0,0 +1,217 @@
+package protocol;
+
+import protocol.interval.Interval;
+
+import java.util.Arrays;
+
+/**
+ * This class is a bounded location cache for every node of the ring. An entry maps a key range (low, high] to the
+ * ordinal of the node that is responsible for it. The origin of a lookup caches the range of the node the lookup ended
+ * at, and the next lookup of a key in that range goes to that node in one hop instead of following the fingers.
+ *
+ * Each node has room for 'capacity' entries. When it is full an entry is evicted with LRU (the entry that was used
+ * least recently) or CLOCK (a second chance sweep over reference bits). The entries of all the nodes are kept in flat
+ * arrays indexed by ordinal*capacity; a lookup in the cache scans the entries of one node, so the capacity is meant to
+ * be small (tens of entries).
+ *
+ * Any membership change makes the cached owners unreliable. invalidateAll() starts a new epoch, and a node whose
+ * entries are from an older epoch drops them the next time its cache is used, so invalidation is O(1).
+ *
+ * This class is not thread safe.
+ */
+public class LocationCache {
+
+    public enum Policy { LRU, CLOCK }
+
+    // number of entries per node
+    public final int capacity;
+    public final Policy policy;
+
+    private int[] lows;
+    private int[] highs;
+    private int[] owners;
+    // LRU: tick of the last use, CLOCK: 1 if the entry was used since the hand passed it
+    private long[] used;
+    private int[] counts;
+    private int[] hands;
+    private int[] epochs;
+    private int epoch;
+    private long tick;
+
+    // lookups that were done with the cache, lookups that jumped to a cached owner at some hop and lookups whose
+    // origin had the owner cached
+    public long lookups;
+    public long hits;
+    public long originHits;
+    // cache lookups of the nodes on the routes (one per hop) and the ones that found the key
+    public long probes;
+    public long probeHits;
+    // entries that were evicted, and the number of times the whole cache was invalidated
+    public long evictions;
+    public long invalidations;
+
+    /**
+     * @param capacity number of entries per node
+     * @param policy eviction policy
+     * @param nodes number of ordinals the cache is sized for, it grows when larger ordinals are used
+     */
+    public LocationCache(int capacity, Policy policy, int nodes){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("cache capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.lows = new int[nodes * capacity];
+        this.highs = new int[nodes * capacity];
+        this.owners = new int[nodes * capacity];
+        this.used = new long[nodes * capacity];
+        this.counts = new int[nodes];
+        this.hands = new int[nodes];
+        this.epochs = new int[nodes];
+    }
+
+    /**
+     * returns the cached owner of the key
+     * @param node ordinal of the node whose cache is used
+     * @param key a position on the ring
+     * @return ordinal of the node responsible for the key, or -1 if the key is not in the cache of the node
+     */
+    public int get(int node, long key){
+        probes++;
+        if(!current(node)){
+            return -1;
+        }
+        int row = node * capacity;
+        int end = row + counts[node];
+        for(int e = row; e < end; e++){
+            if(Interval.inOpenClosed(key, lows[e], highs[e])){
+                used[e] = policy == Policy.LRU ? ++tick : 1;
+                probeHits++;
+                return owners[e];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * caches the owner of a key range in the cache of the node. A cached entry of the same range is updated, otherwise
+     * an entry is evicted if the cache is full.
+     * @param node ordinal of the node whose cache is filled
+     * @param low start of the range (exclusive)
+     * @param high end of the range (inclusive)
+     * @param owner ordinal of the node responsible for the range
+     */
+    public void put(int node, int low, int high, int owner){
+        current(node);
+        int row = node * capacity;
+        int count = counts[node];
+        int e = row;
+        while(e < row + count && (lows[e] != low || highs[e] != high)){
+            e++;
+        }
+        if(e == row + count){ // a new range
+            if(count < capacity){
+                counts[node] = count + 1;
+            } else {
+                e = policy == Policy.LRU ? leastRecentlyUsed(row) : clock(node, row);
+                evictions++;
+            }
+        }
+        lows[e] = low;
+        highs[e] = high;
+        owners[e] = owner;
+        used[e] = policy == Policy.LRU ? ++tick : 1;
+    }
+
+    /**
+     * drops every cached entry, the nodes clear their entries the next time they use the cache
+     */
+    public void invalidateAll(){
+        epoch++;
+        invalidations++;
+    }
+
+    /**
+     * makes room for the given number of ordinals
+     * @param nodes number of ordinals
+     */
+    public void ensureNodes(int nodes){
+        if(nodes <= counts.length){
+            return;
+        }
+        int size = Math.max(nodes, counts.length + (counts.length >> 1));
+        lows = Arrays.copyOf(lows, size * capacity);
+        highs = Arrays.copyOf(highs, size * capacity);
+        owners = Arrays.copyOf(owners, size * capacity);
+        used = Arrays.copyOf(used, size * capacity);
+        counts = Arrays.copyOf(counts, size);
+        hands = Arrays.copyOf(hands, size);
+        int oldSize = epochs.length;
+        epochs = Arrays.copyOf(epochs, size);
+        Arrays.fill(epochs, oldSize, size, epoch);
+    }
+
+    /**
+     * @return bytes used per node: the entries plus the count, clock hand and epoch
+     */
+    public long bytesPerNode(){
+        return capacity * (3L * Integer.BYTES + Long.BYTES) + 3L * Integer.BYTES;
+    }
+
+    /**
+     * @return fraction of the cache lookups of the nodes that found the key, the number to tune the capacity against
+     */
+    public double hitRate(){
+        return probes == 0 ? 0.0 : (double) probeHits / probes;
+    }
+
+    // counts a finished lookup
+    void recordLookup(boolean hit, boolean originHit){
+        lookups++;
+        if(hit){
+            hits++;
+        }
+        if(originHit){
+            originHits++;
+        }
+    }
+
+    // clears the entries of the node if they are from an older epoch. returns false if the cache of the node is empty
+    private boolean current(int node){
+        if(node >= counts.length){
+            ensureNodes(node + 1);
+        }
+        if(epochs[node] != epoch){
+            epochs[node] = epoch;
+            counts[node] = 0;
+            hands[node] = 0;
+            return false;
+        }
+        return counts[node] > 0;
+    }
+
+    private int leastRecentlyUsed(int row){
+        int victim = row;
+        for(int e = row + 1; e < row + capacity; e++){
+            if(used[e] < used[victim]){
+                victim = e;
+            }
+        }
+        return victim;
+    }
+
+    // advances the hand of the node past the referenced entries, clearing their reference bits
+    private int clock(int node, int row){
+        int hand = hands[node];
+        while(used[row + hand] != 0){
+            used[row + hand] = 0;
+            hand = hand + 1 == capacity ? 0 : hand + 1;
+        }
+        hands[node] = hand + 1 == capacity ? 0 : hand + 1;
+        return row + hand;
+    }
+
+    public String toString(){
+        return policy.name().toLowerCase() + ", " + capacity + " entries per node";
+    }
+}
@@ -0,0 +1,178 @@
+package protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class counts what the lookups do, per physical node and per finger level:
+ *
+ *     forwarded  - lookups the node sent on to another node
+ *     terminated - lookups that ended at the node because it is responsible for the key
+ *     cacheHits  - hops where the node took the next node from its location cache
+ *     levels     - how often each finger level was chosen as the next hop. level 0 is the step to the successor
+ *                  (the key is between the node and its successor), levels 1 ... m are the fingers closest() picked
+ *
+ * The counters are striped: each thread that looks up keys gets its own Stripe of primitive long arrays and only that
+ * thread writes to it, so parallel lookups need no locks or atomic operations. ChordProtocol fetches the stripe once
+ * per lookup. snapshot() adds the stripes up; it should be taken when no lookups are running, a snapshot taken during
+ * lookups may miss the latest increments.
+ *
+ * The counters are off unless ChordProtocol.counters is set, then the lookup only checks for null once per hop.
+ */
+public class LookupCounters {
+
+    private final int m;
+
+    // every stripe that has been handed out, to add them up in snapshot()
+    private final List<Stripe> stripes = new ArrayList<>();
+
+    private final ThreadLocal<Stripe> local = new ThreadLocal<>();
+
+    /**
+     * @param m length of the identifier, the number of finger levels
+     */
+    public LookupCounters(int m){
+        this.m = m;
+    }
+
+    /**
+     * The counters of one thread.
+     */
+    public static final class Stripe {
+        long[] forwarded;
+        long[] terminated;
+        long[] cacheHits;
+        final long[] levels;
+
+        Stripe(int nodes, int m){
+            this.forwarded = new long[nodes];
+            this.terminated = new long[nodes];
+            this.cacheHits = new long[nodes];
+            this.levels = new long[m + 1];
+        }
+
+        // grows the node counters when nodes have been added to the ring
+        void ensureNodes(int nodes){
+            if(nodes > forwarded.length){
+                forwarded = Arrays.copyOf(forwarded, nodes);
+                terminated = Arrays.copyOf(terminated, nodes);
+                cacheHits = Arrays.copyOf(cacheHits, nodes);
+            }
+        }
+    }
+
+    /**
+     * returns the stripe of the calling thread, big enough for the physical nodes of the ring
+     * @param ring the ring that is looked up
+     * @return the stripe
+     */
+    Stripe stripe(ChordRing ring){
+        Stripe stripe = local.get();
+        if(stripe == null){
+            stripe = new Stripe(ring.physicalLimit(), m);
+            local.set(stripe);
+            synchronized(stripes){
+                stripes.add(stripe);
+            }
+        } else {
+            stripe.ensureNodes(ring.physicalLimit());
+        }
+        return stripe;
+    }
+
+    /**
+     * adds up the stripes of all threads
+     * @param ring the ring, it gives the number of physical nodes
+     * @return the counters
+     */
+    public Snapshot snapshot(ChordRing ring){
+        Snapshot snapshot = new Snapshot(ring, ring.physicalLimit(), m);
+        synchronized(stripes){
+            for(Stripe stripe : stripes){
+                for(int p = 0; p < Math.min(stripe.forwarded.length, snapshot.forwarded.length); p++){
+                    snapshot.forwarded[p] += stripe.forwarded[p];
+                    snapshot.terminated[p] += stripe.terminated[p];
+                    snapshot.cacheHits[p] += stripe.cacheHits[p];
+                }
+                for(int i = 0; i <= m; i++){
+                    snapshot.levels[i] += stripe.levels[i];
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * The counters added up over all threads, indexed by physical node (see ChordRing) and finger level.
+     */
+    public static final class Snapshot {
+        private final ChordRing ring;
+        public final long[] forwarded;
+        public final long[] terminated;
+        public final long[] cacheHits;
+        public final long[] levels;
+
+        Snapshot(ChordRing ring, int nodes, int m){
+            this.ring = ring;
+            this.forwarded = new long[nodes];
+            this.terminated = new long[nodes];
+            this.cacheHits = new long[nodes];
+            this.levels = new long[m + 1];
+        }
+
+        /**
+         * @return one line per node on the ring: name, index, forwarded, terminated, cache hits
+         */
+        public String nodesCsv(){
+            String newLine = System.lineSeparator();
+            StringBuilder csv = new StringBuilder("node,index,forwarded,terminated,cache_hits").append(newLine);
+            for(int p = 0; p < forwarded.length; p++){
+                if(ring.physicalNode(p) == null){
+                    continue;
+                }
+                csv.append(ring.physicalNode(p).getName()).append(',').append(ring.idAt(ring.primaryOrdinal(p)))
+                        .append(',').append(forwarded[p]).append(',').append(terminated[p])
+                        .append(',').append(cacheHits[p]).append(newLine);
+            }
+            return csv.toString();
+        }
+
+        /**
+         * @return one line per finger level, level 0 is the successor step
+         */
+        public String levelsCsv(){
+            String newLine = System.lineSeparator();
+            StringBuilder csv = new StringBuilder("level,uses").append(newLine);
+            for(int i = 0; i < levels.length; i++){
+                csv.append(i).append(',').append(levels[i]).append(newLine);
+            }
+            return csv.toString();
+        }
+
+        /**
+         * @return the counters as json, the nodes as an array of objects and the levels as an array of counts
+         */
+        public String toJson(){
+            String newLine = System.lineSeparator();
+            StringBuilder json = new StringBuilder("{").append(newLine).append("  \"nodes\": [");
+            boolean first = true;
+            for(int p = 0; p < forwarded.length; p++){
+                if(ring.physicalNode(p) == null){
+                    continue;
+                }
+                json.append(first ? "" : ",").append(newLine).append(String.format(Locale.ROOT,
+                        "    {\"node\": \"%s\", \"index\": %d, \"forwarded\": %d, \"terminated\": %d, \"cacheHits\": %d}",
+                        ring.physicalNode(p).getName(), ring.idAt(ring.primaryOrdinal(p)), forwarded[p], terminated[p],
+                        cacheHits[p]));
+                first = false;
+            }
+            json.append(newLine).append("  ],").append(newLine).append("  \"fingerLevels\": [");
+            for(int i = 0; i < levels.length; i++){
+                json.append(i == 0 ? "" : ", ").append(levels[i]);
+            }
+            return json.append("]").append(newLine).append("}").append(newLine).toString();
+        }
+    }
+}
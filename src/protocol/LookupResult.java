@@ -0,0 +1,129 @@
+package protocol;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+/**
+ * This class is a reusable buffer for the result of a lookup. The lookup writes the destination and the hop count into
+ * it, and if route recording is on, the ordinals of the visited nodes. One object can be reused for any number of
+ * lookups, so a lookup doesn't allocate anything (the path buffer only grows if a route is longer than any before).
+ * The node names and the LookUpResponse are only built when they are asked for.
+ *
+ * With virtual nodes a lookup can go from one token of a node to another token of the same node. That is no hop
+ * between nodes, so the result also counts the physical hops, where consecutive tokens of one node count once.
+ *
+ * A LookupResult must not be shared between threads, each thread should use its own.
+ */
+public class LookupResult {
+
+    // if true the ordinals of the visited nodes are recorded in the path buffer
+    public boolean recordRoute;
+
+    private int destination = -1;
+    private int hopCount;
+    private int physicalHopCount;
+    private int lastOwner = -1;
+    private int[] path;
+
+    /**
+     * @param recordRoute true to record the ordinals of the visited nodes
+     */
+    public LookupResult(boolean recordRoute){
+        this.recordRoute = recordRoute;
+        this.path = new int[recordRoute ? 32 : 0];
+    }
+
+    /**
+     * clears the result before a lookup
+     */
+    void reset(){
+        destination = -1;
+        hopCount = 0;
+        physicalHopCount = 0;
+        lastOwner = -1;
+    }
+
+    /**
+     * records a visited node
+     * @param ordinal ordinal of the node
+     * @param owner number of the physical node of the token
+     */
+    void visit(int ordinal, int owner){
+        if(owner != lastOwner){
+            physicalHopCount++;
+            lastOwner = owner;
+        }
+        if(recordRoute){
+            if(hopCount == path.length){
+                path = Arrays.copyOf(path, Math.max(32, path.length * 2));
+            }
+            path[hopCount] = ordinal;
+        }
+        hopCount++;
+    }
+
+    void setDestination(int ordinal){
+        this.destination = ordinal;
+    }
+
+    /**
+     * @return ordinal of the node that is responsible for the key, or -1 if the lookup failed
+     */
+    public int getDestination(){
+        return destination;
+    }
+
+    /**
+     * @return true if the lookup failed, because it was routed to a failed node or every successor had failed
+     */
+    public boolean isFailed(){
+        return destination < 0;
+    }
+
+    /**
+     * @return number of nodes visited, including the first and the last node
+     */
+    public int getHopCount(){
+        return hopCount;
+    }
+
+    /**
+     * @return number of physical nodes visited, a node whose tokens were visited one after the other counts once. the
+     *     same as getHopCount() without virtual nodes
+     */
+    public int getPhysicalHopCount(){
+        return physicalHopCount;
+    }
+
+    /**
+     * @param hop the hop, 0 ... getHopCount()-1
+     * @return ordinal of the node visited at that hop. only available if the route was recorded
+     */
+    public int getPathOrdinal(int hop){
+        if(!recordRoute || hop < 0 || hop >= hopCount){
+            throw new IndexOutOfBoundsException("hop " + hop + " of " + hopCount + (recordRoute ? "" : ", route not recorded"));
+        }
+        return path[hop];
+    }
+
+    /**
+     * builds the lookup response with the names of the visited nodes. The route must have been recorded and the lookup
+     * must not have failed.
+     *
+     * @param ring the ring the lookup was done on
+     * @return the lookup response
+     */
+    public LookUpResponse toResponse(ChordRing ring){
+        if(!recordRoute){
+            throw new IllegalStateException("route was not recorded");
+        }
+        if(destination < 0){
+            throw new IllegalStateException("lookup failed");
+        }
+        LinkedHashSet<String> visited = new LinkedHashSet<>();
+        for(int hop = 0; hop < hopCount; hop++){
+            visited.add(ring.nodeAt(path[hop]).getName());
+        }
+        return new LookUpResponse(visited, ring.idAt(destination), ring.nodeAt(destination).getName());
+    }
+}
@@ -0,0 +1,248 @@
+package protocol;
+
+import crypto.ConsistentHashing;
+import p2p.NetworkInterface;
+import p2p.NodeInterface;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class is a sorted index of the node indexes on the consistent hash ring. The node indexes are calculated once
+ * and kept in a sorted int array. The position of a node in that array is its ordinal, and the node object of each
+ * ordinal is found through a parallel owner array, so going from an index back to the node does not need any hashing.
+ *
+ * With virtual nodes every physical node has v tokens on the ring: the first is the index of the node name, token t
+ * is the index of tokenName(name, t). The index then holds tokens, and owners[ordinal] is the number of the physical
+ * node of each token, so the mapping costs 4 bytes per token. Physical nodes are numbered in the ring order of their
+ * primary tokens.
+ *
+ * If two tokens get the same index, the one of the node that comes first in the network topology is kept. Nodes that
+ * keep no token are not in the index.
+ */
+public class NodeIndex {
+
+    // sorted distinct node (token) indexes
+    private final int[] ids;
+
+    // owners[i] is the physical node of the token with the index ids[i]
+    private final int[] owners;
+
+    // the physical nodes that have at least one token, in the ring order of their primary tokens
+    private final NodeInterface[] physical;
+
+    // primaries[p] is the ordinal of the primary token of physical node p, the kept token with the smallest number
+    private final int[] primaries;
+
+    private NodeIndex(int[] ids, int[] owners, NodeInterface[] physical, int[] primaries){
+        this.ids = ids;
+        this.owners = owners;
+        this.physical = physical;
+        this.primaries = primaries;
+    }
+
+    /**
+     * Builds the index with one token per node. Every node in the network is hashed exactly once.
+     *
+     * @param network the network that contains the nodes
+     * @param ch consistent hashing used to calculate the node indexes
+     * @return the node index
+     */
+    public static NodeIndex build(NetworkInterface network, ConsistentHashing ch){
+        return build(network, ch, 1);
+    }
+
+    /**
+     * Builds the index with the given number of tokens per node. Every token is hashed exactly once.
+     *
+     * @param network the network that contains the nodes
+     * @param ch consistent hashing used to calculate the node indexes
+     * @param virtualNodes number of tokens per node
+     * @return the node index
+     */
+    public static NodeIndex build(NetworkInterface network, ConsistentHashing ch, int virtualNodes){
+        if(virtualNodes <= 0){
+            throw new IllegalArgumentException("number of virtual nodes must be positive");
+        }
+        if((long) network.getSize() * virtualNodes > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("too many tokens: " + network.getSize() + " * " + virtualNodes);
+        }
+        NodeInterface[] topology = new NodeInterface[network.getSize()];
+        // (node index << 32 | topology position * v + token), sorting it orders by node index and then by topology
+        // position
+        long[] entries = new long[topology.length * virtualNodes];
+        int position = 0;
+        for(Map.Entry<String, NodeInterface> nodeEntry : network.getTopology().entrySet()){
+            topology[position] = nodeEntry.getValue();
+            for(int t = 0; t < virtualNodes; t++){
+                int serial = position * virtualNodes + t;
+                entries[serial] = ((long) ch.hash(tokenName(nodeEntry.getKey(), t)) << 32) | serial;
+            }
+            position++;
+        }
+        Arrays.sort(entries);
+
+        int[] ids = new int[entries.length];
+        int[] owners = new int[entries.length];
+        int[] tokens = new int[topology.length];
+        // smallest token number kept by each node, and the ordinal of that token
+        int[] primaryTokens = new int[topology.length];
+        int[] primaryOrdinals = new int[topology.length];
+        Arrays.fill(primaryTokens, virtualNodes);
+        int size = 0;
+        for(long entry : entries){
+            int id = (int) (entry >> 32);
+            if(size > 0 && ids[size - 1] == id){
+                continue;
+            }
+            int owner = (int) entry / virtualNodes;
+            int token = (int) entry % virtualNodes;
+            ids[size] = id;
+            owners[size] = owner;
+            tokens[owner]++;
+            if(token < primaryTokens[owner]){
+                primaryTokens[owner] = token;
+                primaryOrdinals[owner] = size;
+            }
+            size++;
+        }
+
+        // number the physical nodes that kept a token in the ring order of their primary tokens, so with one token per
+        // node the number of a node is its ordinal
+        int[] byPrimary = new int[size];
+        Arrays.fill(byPrimary, -1);
+        for(int p = 0; p < topology.length; p++){
+            if(tokens[p] > 0){
+                byPrimary[primaryOrdinals[p]] = p;
+            }
+        }
+        int[] numbers = new int[topology.length];
+        Arrays.fill(numbers, -1);
+        int count = 0;
+        for(int ordinal = 0; ordinal < size; ordinal++){
+            if(byPrimary[ordinal] >= 0){
+                numbers[byPrimary[ordinal]] = count++;
+            }
+        }
+        NodeInterface[] physical = new NodeInterface[count];
+        int[] primaries = new int[count];
+        for(int p = 0; p < topology.length; p++){
+            if(numbers[p] >= 0){
+                physical[numbers[p]] = topology[p];
+                primaries[numbers[p]] = primaryOrdinals[p];
+            }
+        }
+        for(int ordinal = 0; ordinal < size; ordinal++){
+            owners[ordinal] = numbers[owners[ordinal]];
+        }
+        return new NodeIndex(Arrays.copyOf(ids, size), Arrays.copyOf(owners, size), physical, primaries);
+    }
+
+    /**
+     * returns the name that is hashed for a token of a node. Token 0 is the node name itself, so one token per node
+     * places the nodes as without virtual nodes.
+     *
+     * @param name name of the node
+     * @param token number of the token, 0 ... v-1
+     * @return the name of the token
+     */
+    public static String tokenName(String name, int token){
+        return token == 0 ? name : name + "#" + token;
+    }
+
+    /**
+     * @return number of distinct node (token) indexes on the ring
+     */
+    public int size(){
+        return ids.length;
+    }
+
+    /**
+     * @param ordinal position of the node on the ring (0 is the node with the smallest index)
+     * @return index of the node
+     */
+    public int idAt(int ordinal){
+        return ids[ordinal];
+    }
+
+    /**
+     * @param ordinal position of the node on the ring (0 is the node with the smallest index)
+     * @return the node object
+     */
+    public NodeInterface nodeAt(int ordinal){
+        return physical[owners[ordinal]];
+    }
+
+    /**
+     * @param ordinal position of the token on the ring
+     * @return number of the physical node that owns the token
+     */
+    public int ownerAt(int ordinal){
+        return owners[ordinal];
+    }
+
+    /**
+     * @return number of physical nodes that have a token on the ring
+     */
+    public int physicalCount(){
+        return physical.length;
+    }
+
+    /**
+     * @param p number of the physical node, 0 ... physicalCount()-1
+     * @return the node object
+     */
+    public NodeInterface physicalAt(int p){
+        return physical[p];
+    }
+
+    /**
+     * @param p number of the physical node
+     * @return ordinal of the primary token of the node, token 0 unless it was lost to another node
+     */
+    public int primaryOrdinal(int p){
+        return primaries[p];
+    }
+
+    /**
+     * returns a copy of the token owners
+     * @return owners[ordinal] is the number of the physical node of the token
+     */
+    int[] owners(){
+        return owners.clone();
+    }
+
+    /**
+     * returns the ordinal of the node that is responsible for the key. It is the first node whose index is greater than
+     * or equal to the key index. If the key index is larger than the biggest node index, the key goes to the node at
+     * the start of the ring. Uses binary search.
+     *
+     * @param keyIndex index of the key
+     * @return ordinal of the responsible node
+     */
+    public int successorOrdinal(int keyIndex){
+        int position = Arrays.binarySearch(ids, keyIndex);
+        if(position >= 0){
+            return position;
+        }
+        position = -position - 1;
+        return position == ids.length ? 0 : position;
+    }
+
+    /**
+     * @param id index of a node
+     * @return ordinal of the node with exactly that index, or -1 if no node has it
+     */
+    public int ordinalOf(int id){
+        int position = Arrays.binarySearch(ids, id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * returns a copy of the sorted node indexes
+     * @return sorted node indexes
+     */
+    public int[] ids(){
+        return ids.clone();
+    }
+}
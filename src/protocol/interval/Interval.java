@@ -8,4 +8,26 @@ public abstract class Interval {
         this.end = end;
 
     }
+
+    /**
+     * checks whether x is in the ring interval (a, b]. The values must already be positions on the ring
+     * (0 ... 2^m-1), so no normalization is done. If a == b the interval is the full ring.
+     */
+    public static boolean inOpenClosed(long x, long a, long b){
+        if (a == b) return true; // full ring
+        if (a < b) return (x > a && x <= b);
+        // wrap-around
+        return (x > a) || (x <= b);
+    }
+
+    /**
+     * checks whether x is in the ring interval (a, b). The values must already be positions on the ring
+     * (0 ... 2^m-1), so no normalization is done. If a == b the interval is empty.
+     */
+    public static boolean inOpenOpen(long x, long a, long b){
+        if (a == b) return false; // empty for strict open interval when identical
+        if (a < b) return (x > a && x < b);
+        // wrap-around
+        return (x > a) || (x < b);
+    }
 }
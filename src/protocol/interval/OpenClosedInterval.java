@@ -11,10 +11,7 @@ public class OpenClosedInterval extends Interval{
         x = ((x % ringLength) + ringLength) % ringLength;
         a = ((a % ringLength) + ringLength) % ringLength;
         b = ((b % ringLength) + ringLength) % ringLength;
-        if (a == b) return true; // full ring
-        if (a < b) return (x > a && x <= b);
-        // wrap-around
-        return (x > a) || (x <= b);
+        return inOpenClosed(x, a, b);
     }
 
 }
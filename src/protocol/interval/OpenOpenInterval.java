@@ -11,10 +11,7 @@ public class OpenOpenInterval extends Interval{
         x = ((x % ringLength) + ringLength) % ringLength;
         a = ((a % ringLength) + ringLength) % ringLength;
         b = ((b % ringLength) + ringLength) % ringLength;
-        if (a == b) return false; // empty for strict open interval when identical
-        if (a < b) return (x > a && x < b);
-        // wrap-around
-        return (x > a) || (x < b);
+        return inOpenOpen(x, a, b);
     }
     
 }
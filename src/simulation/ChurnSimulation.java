@@ -0,0 +1,266 @@
+package simulation;
+
+import crypto.ConsistentHashing;
+import p2p.NetworkInterface;
+import p2p.Node;
+import p2p.NodeInterface;
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+import protocol.FingerTable;
+import protocol.NodeType;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This class runs a join/leave trace against the dynamic membership operations of the chord protocol and measures how
+ * fast the ring converges. Joins and graceful leaves are applied in random order, with a stabilization round after
+ * every 'stabilizeEvery' membership events (stabilization runs periodically in chord). After the trace, stabilization
+ * rounds are run until every node has the correct successor, predecessor and fingers. In each round every live node
+ * runs stabilize() and fixFingers() once.
+ *
+ * Without a successor list a node that joined is lost if its successor leaves before the ring has stabilized around
+ * the new node, so large values of stabilizeEvery can keep the ring from converging.
+ *
+ * New nodes are named "Node i" with numbers after the existing nodes.
+ */
+public class ChurnSimulation {
+
+    private final ChordProtocol protocol;
+    private final NetworkInterface network;
+    private final ConsistentHashing ch;
+    private final Random random;
+
+    // number of membership events between two stabilization rounds during the trace, 0 means no rounds during the trace
+    public int stabilizeEvery = 1;
+
+    /**
+     * @param protocol the built chord protocol
+     * @param seed seed of the trace
+     */
+    public ChurnSimulation(ChordProtocol protocol, long seed){
+        this.protocol = protocol;
+        this.network = protocol.getNetwork();
+        this.ch = protocol.ch;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * applies the trace and stabilizes the ring
+     * @param joins number of nodes that join
+     * @param leaves number of nodes that leave
+     * @param maxRounds largest number of stabilization rounds
+     * @return the report of the run
+     */
+    public Report run(int joins, int leaves, int maxRounds){
+        protocol.enableDynamicMembership();
+        Report report = new Report();
+        // the nodes on the ring, nodes that lost an index collision are in the network but not on the ring
+        ChordRing ring = protocol.ring;
+        List<NodeInterface> live = new ArrayList<>(ring.size());
+        for(int position = 0; position < ring.size(); position++){
+            live.add(ring.nodeAt(ring.ordinalAt(position)));
+        }
+        Set<Integer> liveIds = new HashSet<>();
+        for(NodeInterface node : live){
+            liveIds.add(node.getId());
+        }
+
+        // the trace: joins and leaves in random order
+        List<Boolean> trace = new ArrayList<>();
+        for(int i = 0; i < joins; i++){
+            trace.add(Boolean.TRUE);
+        }
+        for(int i = 0; i < leaves; i++){
+            trace.add(Boolean.FALSE);
+        }
+        Collections.shuffle(trace, random);
+
+        int nextNumber = network.getSize() + 1;
+        int events = 0;
+        for(boolean join : trace){
+            if(stabilizeEvery > 0 && events > 0 && events % stabilizeEvery == 0){
+                long before = protocol.messages;
+                stabilizationRound(live);
+                report.traceRounds++;
+                report.traceStabilizeMessages += protocol.messages - before;
+            }
+            events++;
+            long before = protocol.messages;
+            long keysBefore = protocol.keysMoved;
+            if(join){
+                String name = "Node " + nextNumber++;
+                while(network.getNode(name) != null){
+                    name = "Node " + nextNumber++;
+                }
+                Node node = new Node(name);
+                node.setId(ch.hash(name));
+                if(!liveIds.add(node.getId())){
+                    report.collisions++;
+                    continue;
+                }
+                NodeInterface bootstrap = live.get(random.nextInt(live.size()));
+                network.addNode(name, node);
+                protocol.join(node, bootstrap);
+                live.add(node);
+                report.joins++;
+                report.joinMessages += protocol.messages - before;
+                report.joinKeys += protocol.keysMoved - keysBefore;
+            } else {
+                if(live.size() <= 1){
+                    continue;
+                }
+                int position = random.nextInt(live.size());
+                NodeInterface node = live.get(position);
+                live.set(position, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+                liveIds.remove(node.getId());
+                protocol.leave(node);
+                report.leaves++;
+                report.leaveMessages += protocol.messages - before;
+                report.leaveKeys += protocol.keysMoved - keysBefore;
+            }
+        }
+
+        // stabilization rounds until the ring and the fingers are correct
+        live.sort(Comparator.comparingInt(NodeInterface::getId));
+        long before = protocol.messages;
+        long keysBefore = protocol.keysMoved;
+        report.nodes = live.size();
+        for(int round = 1; round <= maxRounds; round++){
+            stabilizationRound(live);
+            report.rounds = round;
+            if(report.ringRounds == 0 && ringCorrect(live)){
+                report.ringRounds = round;
+            }
+            if(report.ringRounds > 0 && fingersCorrect(live)){
+                report.fingerRounds = round;
+                break;
+            }
+        }
+        report.stabilizeMessages = protocol.messages - before;
+        report.stabilizeKeys = protocol.keysMoved - keysBefore;
+        report.misplacedKeys = misplacedKeys(live);
+        return report;
+    }
+
+    // every live node runs stabilize and fix_fingers once
+    private void stabilizationRound(List<NodeInterface> live){
+        for(NodeInterface node : live){
+            protocol.stabilize(node);
+            protocol.fixFingers(node);
+        }
+    }
+
+    // keys stored on a node that is not responsible for them. live is sorted by id
+    private static int misplacedKeys(List<NodeInterface> live){
+        int size = live.size();
+        int misplaced = 0;
+        for(int i = 0; i < size; i++){
+            int id = live.get(i).getId();
+            int predecessorId = live.get((i + size - 1) % size).getId();
+            misplaced += live.get(i).getDataRange(id, id).length - live.get(i).getDataRange(predecessorId, id).length;
+        }
+        return misplaced;
+    }
+
+    // every node has the next node on the ring as successor and the previous one as predecessor. live is sorted by id
+    private static boolean ringCorrect(List<NodeInterface> live){
+        int size = live.size();
+        for(int i = 0; i < size; i++){
+            NodeInterface node = live.get(i);
+            if(node.getSuccessor() != live.get((i + 1) % size)){
+                return false;
+            }
+            if(size > 1 && node.getNeighbor(NodeType.PREDECESSOR) != live.get((i + size - 1) % size)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // every finger points to the first node at or after its start. live is sorted by id
+    private boolean fingersCorrect(List<NodeInterface> live){
+        int size = live.size();
+        int m = protocol.m;
+        long ringLength = 1L << m;
+        int[] ids = new int[size];
+        for(int i = 0; i < size; i++){
+            ids[i] = live.get(i).getId();
+        }
+        for(NodeInterface node : live){
+            FingerTable table = (FingerTable) node.getRoutingTable();
+            for(int i = 1; i <= m; i++){
+                long start = (node.getId() + (1L << (i - 1))) % ringLength;
+                int position = Arrays.binarySearch(ids, (int) start);
+                if(position < 0){
+                    position = -position - 1;
+                }
+                if(table.get(i) != live.get(position == size ? 0 : position)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The results of a churn run.
+     */
+    public static class Report {
+        public int joins;
+        public int leaves;
+        // joins that were skipped because the new node got the index of a live node
+        public int collisions;
+        // number of live nodes after the trace
+        public int nodes;
+        public long joinMessages;
+        public long leaveMessages;
+        // keys moved by the joins, the leaves and the rounds after the trace (4 bytes each)
+        public long joinKeys;
+        public long leaveKeys;
+        public long stabilizeKeys;
+        // keys on a node that is not responsible for them after the last round
+        public int misplacedKeys;
+        // stabilization rounds run during the trace and their messages
+        public int traceRounds;
+        public long traceStabilizeMessages;
+        // rounds that were run, rounds until successors and predecessors were correct, rounds until the fingers were
+        // correct (0 if not reached)
+        public int rounds;
+        public int ringRounds;
+        public int fingerRounds;
+        public long stabilizeMessages;
+
+        /**
+         * prints the report
+         * @param out the stream the report is printed to
+         */
+        public void print(PrintStream out){
+            out.println("..............churn simulation..............");
+            out.printf("joins: %d leaves: %d skipped joins (index collision): %d nodes after: %d%n",
+                    joins, leaves, collisions, nodes);
+            out.printf("messages per join: %.2f messages per leave: %.2f%n",
+                    joins == 0 ? 0.0 : (double) joinMessages / joins, leaves == 0 ? 0.0 : (double) leaveMessages / leaves);
+            out.printf("keys moved per join: %.2f (%.1f bytes) per leave: %.2f (%.1f bytes) after the trace: %d%n",
+                    joins == 0 ? 0.0 : (double) joinKeys / joins, joins == 0 ? 0.0 : (double) joinKeys * Integer.BYTES / joins,
+                    leaves == 0 ? 0.0 : (double) leaveKeys / leaves,
+                    leaves == 0 ? 0.0 : (double) leaveKeys * Integer.BYTES / leaves, stabilizeKeys);
+            out.printf("stabilization rounds during the trace: %d (%d messages)%n", traceRounds, traceStabilizeMessages);
+            out.printf("ring converged after: %s rounds fingers converged after: %s rounds%n",
+                    ringRounds == 0 ? "> " + rounds : String.valueOf(ringRounds),
+                    fingerRounds == 0 ? "> " + rounds : String.valueOf(fingerRounds));
+            out.printf("stabilization messages: %d (%.2f per node per round)%n", stabilizeMessages,
+                    rounds == 0 || nodes == 0 ? 0.0 : (double) stabilizeMessages / rounds / nodes);
+            out.printf("misplaced keys: %d%n", misplacedKeys);
+            out.println("..............................................");
+        }
+    }
+}
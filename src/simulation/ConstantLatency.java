@@ -0,0 +1,24 @@
+package simulation;
+
+/**
+ * Every message takes the same time.
+ */
+public class ConstantLatency implements LatencyModel {
+
+    private final double latency;
+
+    /**
+     * @param latency latency of every message in milliseconds
+     */
+    public ConstantLatency(double latency){
+        this.latency = latency;
+    }
+
+    public double latency(int from, int to){
+        return latency;
+    }
+
+    public String toString(){
+        return "constant " + latency + " ms";
+    }
+}
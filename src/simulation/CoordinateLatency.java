@@ -0,0 +1,44 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic network coordinates. Every node gets a random point in the unit square and the latency of a message is a
+ * base latency plus a latency per unit of euclidean distance between the two nodes. Nodes that are close on the ring
+ * are not close in the network, like in a real deployment.
+ */
+public class CoordinateLatency implements LatencyModel {
+
+    private final double base;
+    private final double perUnit;
+    private final double[] x;
+    private final double[] y;
+
+    /**
+     * @param nodeCount number of nodes
+     * @param base latency of every message in milliseconds
+     * @param perUnit latency per unit of distance in milliseconds
+     * @param seed seed used to place the nodes
+     */
+    public CoordinateLatency(int nodeCount, double base, double perUnit, long seed){
+        this.base = base;
+        this.perUnit = perUnit;
+        this.x = new double[nodeCount];
+        this.y = new double[nodeCount];
+        SplittableRandom random = new SplittableRandom(seed);
+        for(int i = 0; i < nodeCount; i++){
+            x[i] = random.nextDouble();
+            y[i] = random.nextDouble();
+        }
+    }
+
+    public double latency(int from, int to){
+        double dx = x[from] - x[to];
+        double dy = y[from] - y[to];
+        return base + perUnit * Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public String toString(){
+        return "coordinates " + base + " ms + " + perUnit + " ms/unit";
+    }
+}
@@ -0,0 +1,177 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * This class is the event scheduler of the discrete event simulation. It is a binary min-heap ordered by event time.
+ * Events with the same time come out in the order they were scheduled. An event is just primitives: a time, a type and
+ * two int arguments, stored in parallel arrays, so scheduling an event does not allocate (the arrays only grow).
+ *
+ * After poll() the type and arguments of the removed event are available from type(), arg0() and arg1().
+ */
+public class EventQueue {
+
+    private double[] times;
+    private long[] sequence;
+    private int[] types;
+    private int[] args0;
+    private int[] args1;
+    private int size;
+    private long nextSequence;
+
+    // the event removed by the last poll()
+    private double polledTime;
+    private int polledType;
+    private int polledArg0;
+    private int polledArg1;
+
+    public EventQueue(int initialCapacity){
+        int capacity = Math.max(16, initialCapacity);
+        this.times = new double[capacity];
+        this.sequence = new long[capacity];
+        this.types = new int[capacity];
+        this.args0 = new int[capacity];
+        this.args1 = new int[capacity];
+    }
+
+    /**
+     * @return number of scheduled events
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return true if no event is scheduled
+     */
+    public boolean isEmpty(){
+        return size == 0;
+    }
+
+    /**
+     * schedules an event
+     * @param time time of the event
+     * @param type type of the event
+     * @param arg0 first argument
+     * @param arg1 second argument
+     */
+    public void schedule(double time, int type, int arg0, int arg1){
+        if(size == times.length){
+            grow();
+        }
+        long seq = nextSequence++;
+        // sift up
+        int i = size++;
+        while(i > 0){
+            int parent = (i - 1) >>> 1;
+            if(!before(time, seq, parent)){
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, seq, type, arg0, arg1);
+    }
+
+    /**
+     * removes the earliest event
+     * @return the time of the event
+     */
+    public double poll(){
+        if(size == 0){
+            throw new IllegalStateException("no scheduled events");
+        }
+        polledTime = times[0];
+        polledType = types[0];
+        polledArg0 = args0[0];
+        polledArg1 = args1[0];
+
+        size--;
+        if(size > 0){
+            double time = times[size];
+            long seq = sequence[size];
+            int type = types[size];
+            int arg0 = args0[size];
+            int arg1 = args1[size];
+            // sift down the last event from the root
+            int i = 0;
+            int half = size >>> 1;
+            while(i < half){
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if(right < size && before(times[right], sequence[right], child)){
+                    child = right;
+                }
+                if(!beforeValue(times[child], sequence[child], time, seq)){
+                    break;
+                }
+                move(child, i);
+                i = child;
+            }
+            set(i, time, seq, type, arg0, arg1);
+        }
+        return polledTime;
+    }
+
+    /**
+     * @return time of the last polled event
+     */
+    public double time(){
+        return polledTime;
+    }
+
+    /**
+     * @return type of the last polled event
+     */
+    public int type(){
+        return polledType;
+    }
+
+    /**
+     * @return first argument of the last polled event
+     */
+    public int arg0(){
+        return polledArg0;
+    }
+
+    /**
+     * @return second argument of the last polled event
+     */
+    public int arg1(){
+        return polledArg1;
+    }
+
+    // true if (time, seq) comes before the event at position i
+    private boolean before(double time, long seq, int i){
+        return beforeValue(time, seq, times[i], sequence[i]);
+    }
+
+    private static boolean beforeValue(double time, long seq, double otherTime, long otherSeq){
+        return time < otherTime || (time == otherTime && seq < otherSeq);
+    }
+
+    private void move(int from, int to){
+        times[to] = times[from];
+        sequence[to] = sequence[from];
+        types[to] = types[from];
+        args0[to] = args0[from];
+        args1[to] = args1[from];
+    }
+
+    private void set(int i, double time, long seq, int type, int arg0, int arg1){
+        times[i] = time;
+        sequence[i] = seq;
+        types[i] = type;
+        args0[i] = arg0;
+        args1[i] = arg1;
+    }
+
+    private void grow(){
+        int capacity = times.length * 2;
+        times = Arrays.copyOf(times, capacity);
+        sequence = Arrays.copyOf(sequence, capacity);
+        types = Arrays.copyOf(types, capacity);
+        args0 = Arrays.copyOf(args0, capacity);
+        args1 = Arrays.copyOf(args1, capacity);
+    }
+}
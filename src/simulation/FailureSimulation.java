@@ -0,0 +1,181 @@
+package simulation;
+
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+import protocol.LookupResult;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * This class measures how lookups behave when nodes of the ring fail. For every successor list length r and failure
+ * fraction f a random f*N nodes are marked as failed (the same nodes for every r) and the keys are looked up twice:
+ * with the normal routing, which fails when it reaches a failed node, and with the failure tolerant routing, which
+ * skips failed fingers and successors. A lookup succeeds if it ends at the first live node at or after the key, the
+ * node that takes over the key once the failed nodes are gone. Each lookup starts at a random live node (the same
+ * nodes in both routings), so one badly placed origin doesn't decide the result.
+ *
+ * With virtual nodes a node fails with all its tokens, and lookups start at the primary token of a node. Hops are
+ * counted per physical node.
+ *
+ * Hop inflation is the mean hop count of the successful tolerant lookups divided by the mean hop count with no
+ * failures, the same r and the same origin seed, so a row with no failed nodes has a hop inflation of exactly 1.
+ */
+public class FailureSimulation {
+
+    private final ChordProtocol protocol;
+    private final long seed;
+
+    /**
+     * @param protocol the built chord protocol
+     * @param seed seed that picks the failed nodes
+     */
+    public FailureSimulation(ChordProtocol protocol, long seed){
+        this.protocol = protocol;
+        this.seed = seed;
+    }
+
+    /**
+     * runs the lookups for every successor list length and failure fraction. The ring is left with the successor
+     * lists of the last length and no failed nodes.
+     *
+     * @param keys key indexes, lookup i looks up keys[i % keys.length]
+     * @param lookups number of lookups per run
+     * @param successorListLengths the successor list lengths
+     * @param fractions the failure fractions, 0 ... 1
+     * @return one row per successor list length and failure fraction
+     */
+    public List<Row> run(int[] keys, int lookups, int[] successorListLengths, double[] fractions){
+        ChordRing ring = protocol.ring;
+        boolean failureTolerant = protocol.failureTolerant;
+        List<Row> rows = new ArrayList<>();
+        LookupResult result = new LookupResult(false);
+        for(int r : successorListLengths){
+            ring.buildSuccessorLists(r);
+            ring.clearFailures();
+            for(double fraction : fractions){
+                long originSeed = seed ^ Double.doubleToLongBits(fraction) ^ 0x5DEECE66DL;
+                // the baseline draws its origins with the same seed, on the intact ring
+                protocol.failureTolerant = true;
+                double baseHops = lookUp(keys, lookups, result, originSeed).meanHops;
+                int failed = failNodes(ring, fraction);
+                protocol.failureTolerant = false;
+                Row strict = lookUp(keys, lookups, result, originSeed);
+                protocol.failureTolerant = true;
+                Row row = lookUp(keys, lookups, result, originSeed);
+                row.successorListLength = r;
+                row.fraction = fraction;
+                row.failed = failed;
+                row.strictSuccesses = strict.successes;
+                row.hopInflation = baseHops == 0 ? 0.0 : row.meanHops / baseHops;
+                rows.add(row);
+                ring.clearFailures();
+            }
+        }
+        protocol.failureTolerant = failureTolerant;
+        return rows;
+    }
+
+    // marks a random fraction of the nodes as failed with all their tokens, the same nodes for the same fraction.
+    // returns the number of failed nodes
+    private int failNodes(ChordRing ring, double fraction){
+        int[] nodes = primaries(ring);
+        int size = nodes.length;
+        int count = (int) Math.min(size, Math.round(fraction * size));
+        boolean[] chosen = new boolean[ring.physicalLimit()];
+        SplittableRandom random = new SplittableRandom(seed ^ Double.doubleToLongBits(fraction));
+        for(int i = 0; i < count; i++){ // partial fisher-yates shuffle
+            int j = i + random.nextInt(size - i);
+            int tmp = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = tmp;
+            chosen[ring.ownerOf(nodes[i])] = true;
+        }
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            if(chosen[ring.ownerOf(ordinal)]){
+                ring.fail(ordinal);
+            }
+        }
+        return count;
+    }
+
+    // the primary tokens of the nodes in ring order
+    private static int[] primaries(ChordRing ring){
+        int[] primaries = new int[ring.physicalCount()];
+        for(int position = 0, n = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            if(ring.primaryOrdinal(ring.ownerOf(ordinal)) == ordinal){
+                primaries[n++] = ordinal;
+            }
+        }
+        return primaries;
+    }
+
+    // looks up the keys from random live nodes and counts the lookups that end at the live node responsible for the key
+    private Row lookUp(int[] keys, int lookups, LookupResult result, long originSeed){
+        ChordRing ring = protocol.ring;
+        int[] nodes = primaries(ring);
+        int[] live = new int[nodes.length];
+        int liveCount = 0;
+        for(int ordinal : nodes){
+            if(!ring.isFailed(ordinal)){
+                live[liveCount++] = ordinal;
+            }
+        }
+        live = Arrays.copyOf(live, liveCount);
+        SplittableRandom random = new SplittableRandom(originSeed);
+        Row row = new Row();
+        row.lookups = lookups;
+        long hopSum = 0;
+        for(int lookup = 0; lookup < lookups && live.length > 0; lookup++){
+            int key = keys[lookup % keys.length];
+            protocol.lookUp(key, live[random.nextInt(live.length)], result);
+            int owner = ring.liveCeilingOrdinal(Math.floorMod((long) key, ring.ringLength));
+            if(!result.isFailed() && result.getDestination() == owner){
+                row.successes++;
+                hopSum += result.getPhysicalHopCount();
+            }
+        }
+        row.meanHops = row.successes == 0 ? 0.0 : (double) hopSum / row.successes;
+        return row;
+    }
+
+    /**
+     * prints the rows as a table
+     * @param rows the rows of run()
+     * @param out the stream the table is printed to
+     */
+    public static void print(List<Row> rows, PrintStream out){
+        out.println("..............node failures..............");
+        out.printf("%4s %8s %8s %10s %12s %10s %14s%n",
+                "r", "failure", "failed", "normal ok", "tolerant ok", "mean hops", "hop inflation");
+        for(Row row : rows){
+            out.printf("%4d %7.1f%% %8d %9.2f%% %11.2f%% %10.2f %14.3f%n",
+                    row.successorListLength, 100 * row.fraction, row.failed,
+                    100.0 * row.strictSuccesses / Math.max(1, row.lookups),
+                    100.0 * row.successes / Math.max(1, row.lookups), row.meanHops, row.hopInflation);
+        }
+        out.println(".........................................");
+    }
+
+    /**
+     * The results for one successor list length and failure fraction.
+     */
+    public static class Row {
+        public int successorListLength;
+        public double fraction;
+        // number of failed nodes
+        public int failed;
+        public int lookups;
+        // successful lookups with the normal and with the failure tolerant routing
+        public int strictSuccesses;
+        public int successes;
+        // mean hop count of the successful tolerant lookups, and that divided by the mean with no failures
+        public double meanHops;
+        public double hopInflation;
+    }
+}
@@ -0,0 +1,161 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non negative long values (hop counts, latencies in microseconds, nanoseconds) with a fixed set of
+ * buckets. Values below 2^SIGNIFICANT_BITS have a bucket each, so small values like hop counts are counted exactly.
+ * Larger values share log-linear buckets: every power of two is split into 2^(SIGNIFICANT_BITS-1) buckets of equal
+ * width, so a percentile is off by less than 1/64 of its value. Count, sum, min and max are kept exactly.
+ *
+ * Recording a value only increments an array slot, nothing is allocated. A histogram is not thread safe: each thread
+ * records into its own histogram and the histograms are merged afterwards with merge(), which adds the bucket counts.
+ */
+public class Histogram {
+
+    // values below 2^SIGNIFICANT_BITS are exact, larger values keep this many significant bits
+    private static final int SIGNIFICANT_BITS = 7;
+    private static final int EXACT = 1 << SIGNIFICANT_BITS;
+    private static final int HALF = EXACT >> 1;
+    private static final int BUCKETS = EXACT + (64 - SIGNIFICANT_BITS) * HALF;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * records a value
+     * @param value the value, must not be negative
+     */
+    public void record(long value){
+        if(value < 0){
+            throw new IllegalArgumentException("histogram values must not be negative: " + value);
+        }
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if(value < min){
+            min = value;
+        }
+        if(value > max){
+            max = value;
+        }
+    }
+
+    /**
+     * adds the values of another histogram to this one
+     * @param other the histogram to add, it is not changed
+     */
+    public void merge(Histogram other){
+        for(int i = 0; i < BUCKETS; i++){
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * removes all the values
+     */
+    public void clear(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long count(){
+        return count;
+    }
+
+    /**
+     * @return sum of the recorded values
+     */
+    public long sum(){
+        return sum;
+    }
+
+    /**
+     * @return smallest recorded value, 0 if there is none
+     */
+    public long min(){
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * @return largest recorded value, 0 if there is none
+     */
+    public long max(){
+        return max;
+    }
+
+    /**
+     * @return mean of the recorded values, 0 if there is none
+     */
+    public double mean(){
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * returns the value at the given percentile (nearest rank). For values that share a bucket it is the largest value
+     * of the bucket, but never more than the largest recorded value.
+     *
+     * @param p percentile, 0 ... 100
+     * @return the value at the percentile, 0 if there are no values
+     */
+    public long percentile(double p){
+        if(count == 0){
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= rank){
+                return Math.min(max, highestValue(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param scale the values are divided by this before printing, eg:- 1000 to print microseconds as milliseconds
+     * @return "p50: .. p90: .. p99: .. p99.9: .. max: .."
+     */
+    public String percentiles(double scale){
+        return String.format("p50: %s p90: %s p99: %s p99.9: %s max: %s", format(percentile(50), scale),
+                format(percentile(90), scale), format(percentile(99), scale), format(percentile(99.9), scale),
+                format(max, scale));
+    }
+
+    private static String format(long value, double scale){
+        return scale == 1 ? Long.toString(value) : String.format("%.3f", value / scale);
+    }
+
+    // bucket of the value: the value itself below EXACT, otherwise the power of two and the top significant bits
+    private static int bucket(long value){
+        if(value < EXACT){
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SIGNIFICANT_BITS;
+        return EXACT + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    // largest value that falls into the bucket
+    private static long highestValue(int bucket){
+        if(bucket < EXACT){
+            return bucket;
+        }
+        int shift = (bucket - EXACT) / HALF + 1;
+        long significant = (bucket - EXACT) % HALF + HALF;
+        return ((significant + 1) << shift) - 1;
+    }
+}
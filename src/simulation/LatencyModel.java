@@ -0,0 +1,58 @@
+package simulation;
+
+/**
+ * The latency of a message between two nodes in the discrete event simulation. Nodes are identified by their physical
+ * node number on the chord ring (their ordinal when there are no virtual nodes), so all tokens of a node share one
+ * location.
+ */
+public interface LatencyModel {
+
+    /**
+     * @param from number of the sending node
+     * @param to number of the receiving node
+     * @return the one way latency of a message from the sender to the receiver, in milliseconds
+     */
+    double latency(int from, int to);
+
+    /**
+     * Parses a latency model from the command line:
+     *     constant:MS             every message takes MS milliseconds
+     *     uniform:MIN:MAX         each message takes a random time between MIN and MAX milliseconds
+     *     coords:BASE:SPREAD      every node gets a random point in a unit square, a message takes BASE milliseconds
+     *                             plus SPREAD milliseconds per unit of distance between the two points
+     *
+     * @param spec the model description
+     * @param nodeCount number of nodes on the ring
+     * @param seed seed for the random parts of the model
+     * @return the latency model
+     * @throws IllegalArgumentException if the description is not valid
+     */
+    static LatencyModel parse(String spec, int nodeCount, long seed){
+        String[] parts = spec.split(":");
+        try {
+            switch(parts[0].toLowerCase()){
+                case "constant":
+                    if(parts.length == 2){
+                        return new ConstantLatency(Double.parseDouble(parts[1]));
+                    }
+                    break;
+                case "uniform":
+                    if(parts.length == 3){
+                        return new UniformLatency(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), seed);
+                    }
+                    break;
+                case "coords":
+                    if(parts.length == 3){
+                        return new CoordinateLatency(nodeCount, Double.parseDouble(parts[1]),
+                                Double.parseDouble(parts[2]), seed);
+                    }
+                    break;
+                default:
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid latency model: " + spec
+                + " (expected constant:MS, uniform:MIN:MAX or coords:BASE:SPREAD)");
+    }
+}
@@ -0,0 +1,226 @@
+package simulation;
+
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * This class simulates lookups as messages between nodes with a discrete event simulation. Lookups are issued at random
+ * times (a poisson process with the given arrival rate). A lookup message arrives at a node, waits in the queue of the
+ * node until the node is free, is processed for the service time and is then forwarded to the next hop chosen by
+ * ChordProtocol.nextHop(), which takes the latency given by the latency model. The lookup completes when it is
+ * processed by the node that is responsible for the key.
+ *
+ * Nodes process their messages one at a time in arrival order. Latency is measured from issuing the lookup until the
+ * responsible node has processed it. All times are in milliseconds of simulated time.
+ *
+ * Queues, load and latency are per physical node. With virtual nodes a hop to another token of the same node is
+ * routed inside the node, without a message.
+ *
+ * The protocol must be built (overlay network and finger tables) before running the simulation.
+ */
+public class LookupSimulation {
+
+    // event types
+    private static final int ISSUE = 0;   // arg0: lookup that is issued
+    private static final int ARRIVE = 1;  // arg0: lookup, arg1: ordinal of the node the message arrives at
+    private static final int DEPART = 2;  // arg0: lookup, arg1: ordinal of the node that finished processing it
+    // the latency model and the per node arrays are indexed by physical node (see ChordRing)
+
+    private final ChordProtocol protocol;
+    private final LatencyModel latencyModel;
+    private final double serviceTime;
+    private final double arrivalRate;
+    private final long seed;
+
+    /**
+     * @param protocol the built chord protocol
+     * @param latencyModel latency of the messages between nodes
+     * @param serviceTime time a node needs to process one message, in milliseconds
+     * @param arrivalRate lookups issued per second of simulated time
+     * @param seed seed for the arrival times
+     */
+    public LookupSimulation(ChordProtocol protocol, LatencyModel latencyModel, double serviceTime, double arrivalRate,
+                            long seed){
+        if(arrivalRate <= 0){
+            throw new IllegalArgumentException("arrival rate must be positive");
+        }
+        this.protocol = protocol;
+        this.latencyModel = latencyModel;
+        this.serviceTime = serviceTime;
+        this.arrivalRate = arrivalRate;
+        this.seed = seed;
+    }
+
+    /**
+     * runs the simulation with every lookup starting at the first node of the ring, like ChordProtocol.lookUp()
+     * @param keys key indexes, lookup i looks up keys[i % keys.length]
+     * @param lookups number of lookups
+     * @return the report of the run
+     */
+    public Report run(int[] keys, int lookups){
+        return run(Workload.parse("sequential", "first", keys, protocol.ring, seed), lookups);
+    }
+
+    /**
+     * runs the simulation
+     * @param workload keys and origins of the lookups, taken in the order the lookups are issued
+     * @param lookups number of lookups
+     * @return the report of the run
+     */
+    public Report run(Workload workload, int lookups){
+        ChordRing ring = protocol.ring;
+        int nodes = ring.physicalLimit();
+        SplittableRandom random = new SplittableRandom(seed);
+        double meanGap = 1000.0 / arrivalRate;
+
+        long[] target = new long[lookups];
+        double[] issued = new double[lookups];
+        int[] hops = new int[lookups];
+        // latencies in microseconds and hop counts of the completed lookups
+        Histogram latency = new Histogram();
+        Histogram hopCounts = new Histogram();
+        double[] busyUntil = new double[nodes];
+        int[] queued = new int[nodes];
+        int[] maxQueued = new int[nodes];
+        long[] processed = new long[nodes];
+
+        EventQueue events = new EventQueue(1024);
+        int completed = 0;
+        long eventCount = 0;
+        double now = 0;
+        if(lookups > 0){
+            events.schedule(0, ISSUE, 0, 0);
+        }
+
+        long wallStart = System.nanoTime();
+        while(!events.isEmpty()){
+            now = events.poll();
+            eventCount++;
+            int lookup = events.arg0();
+            int node = events.arg1();
+            int owner = ring.ownerOf(node);
+            switch(events.type()){
+                case ISSUE:
+                    target[lookup] = Math.floorMod((long) workload.nextKey(), ring.ringLength);
+                    issued[lookup] = now;
+                    events.schedule(now, ARRIVE, lookup, workload.nextOrigin());
+                    if(lookup + 1 < lookups){
+                        double gap = -Math.log(1.0 - random.nextDouble()) * meanGap;
+                        events.schedule(now + gap, ISSUE, lookup + 1, 0);
+                    }
+                    break;
+                case ARRIVE:
+                    hops[lookup]++;
+                    int depth = ++queued[owner];
+                    if(depth > maxQueued[owner]){
+                        maxQueued[owner] = depth;
+                    }
+                    double start = Math.max(now, busyUntil[owner]);
+                    busyUntil[owner] = start + serviceTime;
+                    events.schedule(busyUntil[owner], DEPART, lookup, node);
+                    break;
+                case DEPART:
+                    queued[owner]--;
+                    processed[owner]++;
+                    int next = protocol.nextHop(node, target[lookup]);
+                    while(next >= 0 && ring.ownerOf(next) == owner){ // another token of the same node
+                        next = protocol.nextHop(next, target[lookup]);
+                    }
+                    if(next < 0){
+                        latency.record(Math.round((now - issued[lookup]) * 1000));
+                        hopCounts.record(hops[lookup]);
+                        completed++;
+                    } else {
+                        events.schedule(now + latencyModel.latency(owner, ring.ownerOf(next)), ARRIVE, lookup, next);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unknown event type " + events.type());
+            }
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+
+        return new Report(latencyModel, lookups, completed, latency, hopCounts, now, eventCount, wallNanos, maxQueued,
+                processed);
+    }
+
+    /**
+     * The results of a simulation run.
+     */
+    public static class Report {
+        public final LatencyModel latencyModel;
+        public final int lookups;
+        public final int completed;
+        // latencies of the completed lookups in microseconds, and their hop counts
+        public final Histogram latency;
+        public final Histogram hops;
+        public final double meanHops;
+        public final double simulatedMillis;
+        public final long events;
+        public final long wallNanos;
+        // largest number of messages queued at (or being processed by) each physical node
+        public final int[] maxQueueDepth;
+        // number of messages processed by each physical node
+        public final long[] processed;
+
+        Report(LatencyModel latencyModel, int lookups, int completed, Histogram latency, Histogram hops,
+               double simulatedMillis, long events, long wallNanos, int[] maxQueueDepth, long[] processed){
+            this.latencyModel = latencyModel;
+            this.lookups = lookups;
+            this.completed = completed;
+            this.latency = latency;
+            this.hops = hops;
+            this.meanHops = hops.mean();
+            this.simulatedMillis = simulatedMillis;
+            this.events = events;
+            this.wallNanos = wallNanos;
+            this.maxQueueDepth = maxQueueDepth;
+            this.processed = processed;
+        }
+
+        /**
+         * @param p percentile, 0 ... 100
+         * @return the latency at the percentile (nearest rank, within the precision of the histogram), in milliseconds
+         */
+        public double latencyPercentile(double p){
+            return latency.percentile(p) / 1000.0;
+        }
+
+        /**
+         * prints the report
+         * @param out the stream the report is printed to
+         */
+        public void print(PrintStream out){
+            out.println("..............event simulation..............");
+            out.printf("latency model: %s%n", latencyModel);
+            out.printf("lookups: %d completed: %d mean hops: %.2f%n", lookups, completed, meanHops);
+            out.printf("simulated time: %.3f s events: %d (%.0f events/s)%n", simulatedMillis / 1000.0, events,
+                    events * 1e9 / Math.max(1, wallNanos));
+            out.printf("latency ms %s%n", latency.percentiles(1000));
+            out.printf("hops %s%n", hops.percentiles(1));
+
+            int busiest = 0;
+            long depthSum = 0;
+            int queuedNodes = 0;
+            for(int node = 0; node < maxQueueDepth.length; node++){
+                depthSum += maxQueueDepth[node];
+                if(maxQueueDepth[node] > 1){
+                    queuedNodes++;
+                }
+                if(maxQueueDepth[node] > maxQueueDepth[busiest]){
+                    busiest = node;
+                }
+            }
+            if(maxQueueDepth.length > 0){
+                out.printf("queue depth max: %d (node %d, %d messages) mean of node max: %.2f"
+                                + " nodes that queued: %d%n",
+                        maxQueueDepth[busiest], busiest, processed[busiest],
+                        (double) depthSum / maxQueueDepth.length, queuedNodes);
+            }
+            out.println("..............................................");
+        }
+    }
+}
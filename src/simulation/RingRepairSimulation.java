@@ -0,0 +1,188 @@
+package simulation;
+
+import crypto.ConsistentHashing;
+import p2p.NetworkInterface;
+import p2p.Node;
+import p2p.NodeInterface;
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class applies a join/leave trace to the ring of a built chord protocol with ChordProtocol.addNode() and
+ * removeNode(), which repair only the affected fingers and move only the affected key range, and measures the cost of
+ * each repair. The finger tables (and the key placement) are compared with a full build after every event
+ * (verifyEvery = 1), every verifyEvery events, or only after the trace.
+ *
+ * New nodes are named "Node i" with numbers after the existing nodes.
+ */
+public class RingRepairSimulation {
+
+    private final ChordProtocol protocol;
+    private final NetworkInterface network;
+    private final ConsistentHashing ch;
+    private final Random random;
+
+    // number of events between two comparisons with a full build, 0 means only after the trace
+    public int verifyEvery;
+
+    /**
+     * @param protocol the built chord protocol
+     * @param seed seed of the trace
+     */
+    public RingRepairSimulation(ChordProtocol protocol, long seed){
+        this.protocol = protocol;
+        this.network = protocol.getNetwork();
+        this.ch = protocol.ch;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * applies the trace
+     * @param joins number of nodes that join
+     * @param leaves number of nodes that leave
+     * @return the report of the run
+     */
+    public Report run(int joins, int leaves){
+        Report report = new Report();
+        // the nodes on the ring in the order of their primary tokens, nodes that lost an index collision are in the
+        // network but not on the ring
+        ChordRing ring = protocol.ring;
+        List<NodeInterface> live = new ArrayList<>(ring.physicalCount());
+        for(int position = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            if(ring.primaryOrdinal(ring.ownerOf(ordinal)) == ordinal){
+                live.add(ring.nodeAt(ordinal));
+            }
+        }
+
+        List<Boolean> trace = new ArrayList<>();
+        for(int i = 0; i < joins; i++){
+            trace.add(Boolean.TRUE);
+        }
+        for(int i = 0; i < leaves; i++){
+            trace.add(Boolean.FALSE);
+        }
+        Collections.shuffle(trace, random);
+
+        int nextNumber = network.getSize() + 1;
+        int events = 0;
+        for(boolean join : trace){
+            if(join){
+                String name = "Node " + nextNumber++;
+                while(network.getNode(name) != null){
+                    name = "Node " + nextNumber++;
+                }
+                // with virtual nodes addNode() skips the tokens that collide
+                if(protocol.virtualNodes == 1 && protocol.ring.ordinalOf(ch.hash(name)) >= 0){
+                    report.collisions++;
+                    continue;
+                }
+                Node node = new Node(name);
+                long keysBefore = protocol.keysMoved;
+                long start = System.nanoTime();
+                int changed = protocol.addNode(node);
+                long nanos = System.nanoTime() - start;
+                report.joinKeys += protocol.keysMoved - keysBefore;
+                live.add(node);
+                report.joins++;
+                report.joinFingers += changed;
+                report.joinNanos += nanos;
+                report.maxJoinNanos = Math.max(report.maxJoinNanos, nanos);
+            } else {
+                if(live.size() <= 1){
+                    continue;
+                }
+                int position = random.nextInt(live.size());
+                NodeInterface node = live.get(position);
+                live.set(position, live.get(live.size() - 1));
+                live.remove(live.size() - 1);
+                long keysBefore = protocol.keysMoved;
+                long start = System.nanoTime();
+                int changed = protocol.removeNode(node);
+                long nanos = System.nanoTime() - start;
+                report.leaveKeys += protocol.keysMoved - keysBefore;
+                report.leaves++;
+                report.leaveFingers += changed;
+                report.leaveNanos += nanos;
+                report.maxLeaveNanos = Math.max(report.maxLeaveNanos, nanos);
+            }
+            events++;
+            if(verifyEvery > 0 && events % verifyEvery == 0){
+                verify(report);
+            }
+        }
+        if(verifyEvery == 0 || events % verifyEvery != 0){
+            verify(report);
+        }
+        report.nodes = protocol.ring.physicalCount();
+        return report;
+    }
+
+    // compares the fingers with a full build
+    private void verify(Report report){
+        long start = System.nanoTime();
+        report.mismatches += protocol.verifyFingerTable();
+        report.misplacedKeys += protocol.verifyKeyPlacement();
+        report.verifyNanos += System.nanoTime() - start;
+        report.verifications++;
+    }
+
+    /**
+     * The results of a repair run.
+     */
+    public static class Report {
+        public int joins;
+        public int leaves;
+        // joins that were skipped because the new node got the index of a node on the ring
+        public int collisions;
+        // number of nodes after the trace
+        public int nodes;
+        // finger entries changed by the joins and the leaves
+        public long joinFingers;
+        public long leaveFingers;
+        // keys moved by the joins and the leaves, 4 bytes each
+        public long joinKeys;
+        public long leaveKeys;
+        public long joinNanos;
+        public long leaveNanos;
+        public long maxJoinNanos;
+        public long maxLeaveNanos;
+        // comparisons with a full build, the time they took and the finger entries that differed
+        public int verifications;
+        public long verifyNanos;
+        public long mismatches;
+        // keys found on a node that is not responsible for them, at the checks
+        public long misplacedKeys;
+
+        /**
+         * prints the report
+         * @param out the stream the report is printed to
+         */
+        public void print(PrintStream out){
+            out.println("..............finger repair..............");
+            out.printf("joins: %d leaves: %d skipped joins (index collision): %d nodes after: %d%n",
+                    joins, leaves, collisions, nodes);
+            out.printf("fingers changed per join: %.2f per leave: %.2f%n",
+                    perEvent(joinFingers, joins), perEvent(leaveFingers, leaves));
+            out.printf("keys moved per join: %.2f (%.1f bytes) per leave: %.2f (%.1f bytes)%n",
+                    perEvent(joinKeys, joins), perEvent(joinKeys * Integer.BYTES, joins),
+                    perEvent(leaveKeys, leaves), perEvent(leaveKeys * Integer.BYTES, leaves));
+            out.printf("repair time per join: %.2f us (max %.2f us) per leave: %.2f us (max %.2f us)%n",
+                    perEvent(joinNanos, joins) / 1000.0, maxJoinNanos / 1000.0,
+                    perEvent(leaveNanos, leaves) / 1000.0, maxLeaveNanos / 1000.0);
+            out.printf("full build and compare: %.3f ms per check (%d checks), mismatching fingers: %d misplaced keys: %d%n",
+                    perEvent(verifyNanos, verifications) / 1e6, verifications, mismatches, misplacedKeys);
+            out.println("...........................................");
+        }
+
+        private static double perEvent(long total, int events){
+            return events == 0 ? 0.0 : (double) total / events;
+        }
+    }
+}
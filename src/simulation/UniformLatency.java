@@ -0,0 +1,36 @@
+package simulation;
+
+import java.util.SplittableRandom;
+
+/**
+ * Each message takes a random time drawn uniformly from [min, max). The simulation runs on one thread, so the random
+ * generator is not shared.
+ */
+public class UniformLatency implements LatencyModel {
+
+    private final double min;
+    private final double max;
+    private final SplittableRandom random;
+
+    /**
+     * @param min smallest latency in milliseconds
+     * @param max largest latency in milliseconds
+     * @param seed seed of the random generator
+     */
+    public UniformLatency(double min, double max, long seed){
+        if(min < 0 || max < min){
+            throw new IllegalArgumentException("uniform latency needs 0 <= min <= max");
+        }
+        this.min = min;
+        this.max = max;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public double latency(int from, int to){
+        return max == min ? min : min + random.nextDouble() * (max - min);
+    }
+
+    public String toString(){
+        return "uniform " + min + "-" + max + " ms";
+    }
+}
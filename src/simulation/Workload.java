@@ -0,0 +1,218 @@
+package simulation;
+
+import protocol.ChordRing;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A stream of lookups: which key is looked up and at which node the lookup starts. Key popularity and origins are
+ * given as distributions (see parse()), all the random choices come from one seeded generator so a run can be
+ * repeated. For every lookup nextKey() is called first and then nextOrigin().
+ *
+ * For the skewed distributions the most popular keys (and origins) are a random choice of keys (and nodes), not the
+ * smallest indexes, so popular keys are spread over the ring.
+ */
+public class Workload {
+
+    private final int[] keys;
+    private final int[] origins;
+    private final Popularity keyPopularity;
+    private final Popularity originPopularity;
+    private final SplittableRandom random;
+    private int issued;
+
+    private Workload(int[] keys, int[] origins, Popularity keyPopularity, Popularity originPopularity,
+                     SplittableRandom random){
+        this.keys = keys;
+        this.origins = origins;
+        this.keyPopularity = keyPopularity;
+        this.originPopularity = originPopularity;
+        this.random = random;
+    }
+
+    /**
+     * Parses a workload from the command line. Keys and origins take the same distributions:
+     *     sequential        the items in order, starting again at the first after the last (keys only)
+     *     first             always the node with the smallest index (origins only)
+     *     uniform           every item is equally likely
+     *     zipf:S            the item of rank r is chosen with probability proportional to 1/r^S
+     *     hotspot:F:P       a fraction F of the items gets a fraction P of the lookups
+     *
+     * @param keySpec distribution of the keys
+     * @param originSpec distribution of the origins
+     * @param keys key indexes that are looked up
+     * @param ring the ring, the origins are its nodes
+     * @param seed seed of the workload
+     * @return the workload
+     * @throws IllegalArgumentException if a description is not valid
+     */
+    public static Workload parse(String keySpec, String originSpec, int[] keys, ChordRing ring, long seed){
+        if(keys.length == 0){
+            throw new IllegalArgumentException("no keys to look up");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        // one origin per node, its primary token, in ring order
+        int[] origins = new int[ring.physicalCount()];
+        for(int position = 0, n = 0; position < ring.size(); position++){
+            int ordinal = ring.ordinalAt(position);
+            if(ring.primaryOrdinal(ring.ownerOf(ordinal)) == ordinal){
+                origins[n++] = ordinal;
+            }
+        }
+        Popularity keyPopularity = Popularity.parse(keySpec, keys.length, true);
+        Popularity originPopularity = Popularity.parse(originSpec, origins.length, false);
+        // ranks of the skewed distributions go to random items
+        int[] rankedKeys = keyPopularity.skewed() ? shuffle(keys.clone(), random) : keys;
+        int[] rankedOrigins = originPopularity.skewed() ? shuffle(origins, random) : origins;
+        return new Workload(rankedKeys, rankedOrigins, keyPopularity, originPopularity, random);
+    }
+
+    /**
+     * checks the descriptions of the key and origin distributions without building a workload, so that a bad command
+     * line is reported before the simulation runs
+     *
+     * @param keySpec distribution of the keys
+     * @param originSpec distribution of the origins
+     * @throws IllegalArgumentException if a description is not valid
+     */
+    public static void check(String keySpec, String originSpec){
+        Popularity.parse(keySpec, 1, true);
+        Popularity.parse(originSpec, 1, false);
+    }
+
+    /**
+     * @return the key index of the next lookup
+     */
+    public int nextKey(){
+        return keys[keyPopularity.next(random, issued++)];
+    }
+
+    /**
+     * @return ordinal of the node the next lookup starts at
+     */
+    public int nextOrigin(){
+        return origins[originPopularity.next(random, issued - 1)];
+    }
+
+    public String toString(){
+        return "keys " + keyPopularity + ", origins " + originPopularity;
+    }
+
+    private static int[] shuffle(int[] values, SplittableRandom random){
+        for(int i = values.length - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+        return values;
+    }
+
+    /**
+     * A distribution over the ranks 0 ... n-1.
+     */
+    static final class Popularity {
+        private final String spec;
+        private final String kind;
+        private final int n;
+        // zipf: cumulative probability of the ranks
+        private final double[] cdf;
+        // hotspot: number of hot items and the probability that one of them is chosen
+        private final int hot;
+        private final double hotProbability;
+
+        private Popularity(String spec, String kind, int n, double[] cdf, int hot, double hotProbability){
+            this.spec = spec;
+            this.kind = kind;
+            this.n = n;
+            this.cdf = cdf;
+            this.hot = hot;
+            this.hotProbability = hotProbability;
+        }
+
+        static Popularity parse(String spec, int n, boolean keys){
+            String[] parts = spec.split(":");
+            String kind = parts[0].toLowerCase();
+            try {
+                switch(kind){
+                    case "sequential":
+                        if(parts.length == 1 && keys){
+                            return new Popularity(spec, kind, n, null, 0, 0);
+                        }
+                        break;
+                    case "first":
+                        if(parts.length == 1 && !keys){
+                            return new Popularity(spec, kind, n, null, 0, 0);
+                        }
+                        break;
+                    case "uniform":
+                        if(parts.length == 1){
+                            return new Popularity(spec, kind, n, null, 0, 0);
+                        }
+                        break;
+                    case "zipf":
+                        double s = Double.parseDouble(parts[1]);
+                        if(parts.length == 2 && s >= 0 && !Double.isInfinite(s)){
+                            return new Popularity(spec, kind, n, zipfCdf(n, s), 0, 0);
+                        }
+                        break;
+                    case "hotspot":
+                        double fraction = Double.parseDouble(parts[1]);
+                        double probability = Double.parseDouble(parts[2]);
+                        if(parts.length == 3 && fraction > 0 && fraction <= 1 && probability >= 0 && probability <= 1){
+                            int hot = (int) Math.max(1, Math.min(n, Math.round(fraction * n)));
+                            return new Popularity(spec, kind, n, null, hot, probability);
+                        }
+                        break;
+                    default:
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Invalid " + (keys ? "key" : "origin") + " distribution: " + spec
+                    + " (expected " + (keys ? "sequential" : "first") + ", uniform, zipf:S or hotspot:F:P)");
+        }
+
+        private static double[] zipfCdf(int n, double s){
+            double[] cdf = new double[n];
+            double sum = 0;
+            for(int rank = 0; rank < n; rank++){
+                sum += Math.pow(rank + 1, -s);
+                cdf[rank] = sum;
+            }
+            for(int rank = 0; rank < n; rank++){
+                cdf[rank] /= sum;
+            }
+            return cdf;
+        }
+
+        boolean skewed(){
+            return cdf != null || hot > 0;
+        }
+
+        // the rank of the next item, counter is the number of the lookup
+        int next(SplittableRandom random, int counter){
+            switch(kind){
+                case "sequential":
+                    return Integer.remainderUnsigned(counter, n);
+                case "first":
+                    return 0;
+                case "zipf":
+                    int rank = Arrays.binarySearch(cdf, random.nextDouble());
+                    return Math.min(n - 1, rank >= 0 ? rank : -rank - 1);
+                case "hotspot":
+                    if(hot == n || random.nextDouble() < hotProbability){
+                        return random.nextInt(hot);
+                    }
+                    return hot + random.nextInt(n - hot);
+                default:
+                    return random.nextInt(n);
+            }
+        }
+
+        public String toString(){
+            return spec;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package simulation;
+
+import protocol.ChordProtocol;
+import protocol.ChordRing;
+import protocol.LocationCache;
+import protocol.LookupResult;
+
+import java.io.PrintStream;
+
+/**
+ * This class streams the lookups of a workload through the chord protocol and counts the load of every node: how many
+ * lookups it forwarded to another node and how many it answered as the responsible node. The lookups are generated one
+ * at a time, so any number of lookups can be run without storing them.
+ *
+ * The load is counted per physical node. With virtual nodes a hop from one token of a node to another token of the
+ * same node is not forwarding, and the hop count is the physical hop count (see LookupResult).
+ *
+ * If the protocol has a location cache the report also shows its hit rate (the cache lookups of the nodes on the routes
+ * that found the key), how often the origin had the owner cached and how many lookups it answered. Running the same
+ * workload without and then with the cache (see setBaseline()) shows how many hops the cache saves.
+ */
+public class WorkloadSimulation {
+
+    private final ChordProtocol protocol;
+
+    /**
+     * @param protocol the built chord protocol
+     */
+    public WorkloadSimulation(ChordProtocol protocol){
+        this.protocol = protocol;
+    }
+
+    /**
+     * runs the lookups
+     * @param workload the keys and origins of the lookups
+     * @param lookups number of lookups
+     * @return the report of the run
+     */
+    public Report run(Workload workload, int lookups){
+        ChordRing ring = protocol.ring;
+        Report report = new Report(ring, workload, lookups);
+        LookupResult result = new LookupResult(true);
+        LocationCache cache = protocol.cache;
+        long cacheLookups = cache == null ? 0 : cache.lookups;
+        long cacheHits = cache == null ? 0 : cache.hits;
+        long cacheOriginHits = cache == null ? 0 : cache.originHits;
+        long cacheProbes = cache == null ? 0 : cache.probes;
+        long cacheProbeHits = cache == null ? 0 : cache.probeHits;
+        long start = System.nanoTime();
+        for(int lookup = 0; lookup < lookups; lookup++){
+            int key = workload.nextKey();
+            protocol.lookUp(key, workload.nextOrigin(), result);
+            if(result.isFailed()){
+                report.failed++;
+                continue;
+            }
+            report.hops.record(result.getPhysicalHopCount());
+            int owner = ring.ownerOf(result.getPathOrdinal(0));
+            for(int hop = 1; hop < result.getHopCount(); hop++){
+                int next = ring.ownerOf(result.getPathOrdinal(hop));
+                if(next != owner){
+                    report.forwarded[owner]++;
+                    owner = next;
+                }
+            }
+            report.answered[ring.ownerOf(result.getDestination())]++;
+        }
+        report.wallNanos = System.nanoTime() - start;
+        if(cache != null){
+            report.cache = cache;
+            report.cacheLookups = cache.lookups - cacheLookups;
+            report.cacheHits = cache.hits - cacheHits;
+            report.cacheOriginHits = cache.originHits - cacheOriginHits;
+            report.cacheProbes = cache.probes - cacheProbes;
+            report.cacheProbeHits = cache.probeHits - cacheProbeHits;
+        }
+        return report;
+    }
+
+    /**
+     * The results of a workload run. The load arrays are indexed by physical node (see ChordRing).
+     */
+    public static class Report {
+        private final ChordRing ring;
+        public final Workload workload;
+        public final int lookups;
+        public int failed;
+        // hop counts of the completed lookups
+        public final Histogram hops = new Histogram();
+        public long wallNanos;
+        // lookups each node forwarded to another node
+        public final long[] forwarded;
+        // lookups each node answered as the responsible node
+        public final long[] answered;
+        // the location cache of the run (null if there was none), the lookups that used it, the ones that jumped to
+        // a cached owner at some hop and the ones whose origin had the owner cached
+        public LocationCache cache;
+        public long cacheLookups;
+        public long cacheHits;
+        public long cacheOriginHits;
+        // cache lookups of the nodes on the routes (one per hop) and the ones that found the key
+        public long cacheProbes;
+        public long cacheProbeHits;
+        // mean hop count of the same workload without a cache, NaN if unknown
+        public double baselineMeanHops = Double.NaN;
+
+        Report(ChordRing ring, Workload workload, int lookups){
+            this.ring = ring;
+            this.workload = workload;
+            this.lookups = lookups;
+            this.forwarded = new long[ring.physicalLimit()];
+            this.answered = new long[ring.physicalLimit()];
+        }
+
+        /**
+         * @return mean hop count of the completed lookups
+         */
+        public double meanHops(){
+            return hops.mean();
+        }
+
+        /**
+         * sets the mean hop count of the same workload without a cache, to report the hop reduction
+         * @param baseline the report of the run without a cache
+         */
+        public void setBaseline(Report baseline){
+            this.baselineMeanHops = baseline.meanHops();
+        }
+
+        /**
+         * prints the report with the nodes that forwarded the most lookups
+         * @param out the stream the report is printed to
+         * @param top number of nodes to list
+         */
+        public void print(PrintStream out, int top){
+            int completed = lookups - failed;
+            out.println("..............workload..............");
+            out.printf("workload: %s%n", workload);
+            out.printf("lookups: %d failed: %d mean hops: %.2f (%.0f lookups/s)%n", lookups, failed, meanHops(),
+                    lookups * 1e9 / Math.max(1, wallNanos));
+            out.printf("hops %s%n", hops.percentiles(1));
+            if(cache != null){
+                out.printf("cache: %s hit rate: %.2f%% (%d of %d node lookups) origin hit rate: %.2f%%"
+                                + " evictions: %d memory per node: %d bytes%n", cache,
+                        100.0 * cacheProbeHits / Math.max(1, cacheProbes), cacheProbeHits, cacheProbes,
+                        100.0 * cacheOriginHits / Math.max(1, cacheLookups), cache.evictions, cache.bytesPerNode());
+                out.printf("lookups that used a cached owner at any hop: %.2f%%%n",
+                        100.0 * cacheHits / Math.max(1, cacheLookups));
+                if(!Double.isNaN(baselineMeanHops)){
+                    out.printf("mean hops without cache: %.2f with cache: %.2f hop reduction: %.2f%%%n",
+                            baselineMeanHops, meanHops(),
+                            baselineMeanHops == 0 ? 0.0 : 100.0 * (baselineMeanHops - meanHops()) / baselineMeanHops);
+                }
+            }
+            printLoad(out, "forwarding", forwarded);
+            printLoad(out, "answering", answered);
+
+            // the busiest forwarders, found with repeated selection so the order is stable for equal loads
+            int[] nodes = nodesInRingOrder();
+            boolean[] listed = new boolean[forwarded.length];
+            out.printf("busiest forwarders:%n");
+            for(int n = 0; n < Math.min(top, nodes.length); n++){
+                int busiest = -1;
+                for(int p : nodes){
+                    if(!listed[p] && (busiest < 0 || forwarded[p] > forwarded[busiest])){
+                        busiest = p;
+                    }
+                }
+                listed[busiest] = true;
+                out.printf("  %s:%d forwarded: %d (%.2f%%) answered: %d%n", ring.physicalNode(busiest).getName(),
+                        ring.idAt(ring.primaryOrdinal(busiest)), forwarded[busiest],
+                        100.0 * forwarded[busiest] / Math.max(1, hops.sum() - completed), answered[busiest]);
+            }
+            out.println("....................................");
+        }
+
+        private void printLoad(PrintStream out, String name, long[] load){
+            long max = 0;
+            long sum = 0;
+            int idle = 0;
+            int[] nodes = nodesInRingOrder();
+            for(int p : nodes){
+                long value = load[p];
+                sum += value;
+                max = Math.max(max, value);
+                if(value == 0){
+                    idle++;
+                }
+            }
+            double mean = (double) sum / Math.max(1, nodes.length);
+            out.printf("%s load max: %d mean: %.2f max/mean: %.2f idle nodes: %d%n", name, max, mean,
+                    mean == 0 ? 0.0 : max / mean, idle);
+        }
+
+        // the physical nodes in the ring order of their primary tokens
+        private int[] nodesInRingOrder(){
+            int[] nodes = new int[ring.physicalCount()];
+            for(int position = 0, n = 0; position < ring.size(); position++){
+                int ordinal = ring.ordinalAt(position);
+                if(ring.primaryOrdinal(ring.ownerOf(ordinal)) == ordinal){
+                    nodes[n++] = ring.ownerOf(ordinal);
+                }
+            }
+            return nodes;
+        }
+    }
+}